@@ -3,16 +3,31 @@ package anvil;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import anvil.api.Command.Command;
+import anvil.api.Command.CommandExecutionData;
 import anvil.api.Command.CommandPermissions;
+import anvil.api.Command.CommandType;
 import anvil.api.Command.CommandResult.*;
 import anvil.api.Config.ConfigFile;
 import anvil.api.Config.ConfigOption;
 import anvil.api.Internal.Player;
+import anvil.api.Internal.ProfileStore;
 import anvil.api.Internal.Runner;
 import anvil.api.Internal.RunnerManager;
 import anvil.api.ServerOutputLine.Defaults;
@@ -24,6 +39,24 @@ public abstract class Main{
 	
 	private static File plugIn_directory;
 	
+	private static final int OUTPUT_BATCH_SIZE = 256;
+	private static final long OUTPUT_BATCH_TIME = 20;
+	
+	private static volatile boolean server_started = false;
+	
+	private static CompletableFuture<Void> player_updates = CompletableFuture.completedFuture(null);
+	private static ExecutorService player_updater = Executors.newSingleThreadExecutor(new ThreadFactory(){
+		
+		@Override
+		public Thread newThread(Runnable r){
+			Thread thread = new Thread(r, "Player Updates");
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	
+	});
+	
 	
 	public static void main(String[] args){
 		current_path = System.getProperty("user.dir");
@@ -48,34 +81,38 @@ public abstract class Main{
 		System.out.println("Starting Anvil...");
 		
 		
-		LinkedList<Thread> created_threads = null;
+		try{
+			ProfileStore.open(new File(current_path + "/profiles.log"));
+		}
+		catch (IOException e){
+			System.err.println("The Player profiles couldn't be loaded, they'll be resolved again: "
+					+ e.getMessage());
+		}
+		
 		
 		// {{ Load PlugIns:
 		
 		plugIn_directory = new File(current_path + "/PlugIns");
 		
 		if (!plugIn_directory.exists()){
-			plugIn_directory.mkdir();	//Definitely no PlugIns to load.
+			plugIn_directory.mkdir();	//Definitely no PlugIns to load, but it can be reloaded into later.
 		}
-		else{
-			HashMap<String, String> load_errors = PlugIn_Loader.loadPlugIns(plugIn_directory);
-			
-			for (String file : load_errors.keySet()){
-				String error = load_errors.get(file);
-				
-				System.err.println("\"" + file + "\" failed to load: " + error);
-			}
-			
+		
+		HashMap<String, String> load_errors = PlugIn_Loader.loadPlugIns(plugIn_directory);
+		
+		for (String file : load_errors.keySet()){
+			String error = load_errors.get(file);
 			
-			created_threads = PlugIn_Loader.applyMethod("onLoad");
+			System.err.println("\"" + file + "\" failed to load: " + error);
 		}
 		
-		// }} Load PlugIns:
 		
+		PlugIn_Loader.applyPhase("onLoad");
 		
-		if (created_threads != null){
-			waitForThreads(created_threads);
-		}
+		
+		addPlugInCommands();
+		
+		// }} Load PlugIns:
 		
 		
 		String runFile_path = null;
@@ -98,8 +135,7 @@ public abstract class Main{
 			main_config.saveToFile();
 			
 			
-			created_threads = PlugIn_Loader.applyMethod("onShutDown");
-			waitForThreads(created_threads);
+			PlugIn_Loader.applyPhase("onShutDown");
 			
 			
 			System.exit(0);
@@ -129,6 +165,47 @@ public abstract class Main{
 		
 		Thread outputLine_interpreter = new Thread(){
 			
+			private Iterator<ServerOutputLine> batch = Collections.emptyIterator();
+			private LinkedList<ServerOutputLine> uninterpreted = new LinkedList<>();
+			
+			
+			/**
+			 * Gets the next output line of the main Runner. Lines are taken from the Runner a batch at a time, and 
+			 * each batch is passed to the PlugIns once Anvil is done with it.
+			 * 
+			 * @return ServerOutputLine object containing the next output line. Null if this thread is interrupted.
+			 */
+			private ServerOutputLine nextOutputLine(){
+				if (!batch.hasNext()){
+					interpretOutputLines();
+					
+					LinkedList<ServerOutputLine> lines = main_runner.getNextOutputLines(OUTPUT_BATCH_SIZE,
+							OUTPUT_BATCH_TIME);
+					
+					if (lines == null){
+						return null;
+					}
+					
+					batch = lines.iterator();
+				}
+				
+				
+				return batch.next();
+			}
+			
+			
+			/**
+			 * Passes the output lines Anvil is done with to the PlugIns.
+			 */
+			private void interpretOutputLines(){
+				if (!uninterpreted.isEmpty()){
+					PlugIn_Loader.interpretServerOutputLines("main", uninterpreted);
+					
+					uninterpreted = new LinkedList<>();
+				}
+			}
+			
+			
 			@Override
 			public void run(){
 				Class<?>[] param_types_start = new Class<?>[1];
@@ -138,26 +215,21 @@ public abstract class Main{
 				params_start[0] = "main";
 				
 				
-				Class<?>[] param_types = new Class<?>[2];
-				param_types[0] = String.class;
-				param_types[1] = ServerOutputLine.class;
-				
-				Object[] params = new Object[2];
-				params[0] = "main";
-				
-				
 				ServerOutputLine line;
-				while ((line = main_runner.getNextOutputLine()) != null){
+				while ((line = nextOutputLine()) != null){
 					
 					//Should run all PlugIn interprets here. Also print to the screen if the Runner is active.
 					
-					params[1] = line;
-					
 					System.out.println(line.getEntireLine());
 					
 					
 					if (line.getType() == Defaults.DONE_LOADING){
-						PlugIn_Loader.applyMethod("onServerStart", param_types_start, params_start);
+						interpretOutputLines();	//Everything before this line came before the server started.
+						
+						server_started = true;
+						
+						//Waits, so that no PlugIn gets a line before it's been started:
+						PlugIn_Loader.applyPhase("onServerStart", param_types_start, params_start);
 					}
 					
 					
@@ -167,25 +239,36 @@ public abstract class Main{
 							line.getType() == Defaults.PLAYER_SAY_MESSAGE){
 						
 						if (line.getSubContents().startsWith("!")){
-							Command command = null;
 							try{
-								command = new Command(line.getContents());
+								Command command = new Command(line.getContents());
 								
 								if (command.getType().getPermissions() == CommandPermissions.SERVER){
 									runCommand(command, null, main_runner);	//TODO This might be illegal.
 								}
 								else if (command.getType().getPermissions() == CommandPermissions.ADMIN){
-									Player culprit = line.getCauseUser();
+									withPlayer(line.getCauseUserName(), new Consumer<Player>(){
+										
+										@Override
+										public void accept(Player culprit){
+											if (culprit.isOpped("main")){
+												runCommand(command, culprit, main_runner);
+											}
+											else{
+												//TODO Tell the player that they don't have access to the command.
+											}
+										}
 									
-									if (culprit.isOpped("main")){
-										runCommand(command, culprit, main_runner);
-									}
-									else{
-										//TODO Tell the player that they don't have access to the command.
-									}
+									});
 								}
 								else if (command.getType().getPermissions() == CommandPermissions.PLAYER){
-									runCommand(command, line.getCauseUser(), main_runner);
+									withPlayer(line.getCauseUserName(), new Consumer<Player>(){
+										
+										@Override
+										public void accept(Player culprit){
+											runCommand(command, culprit, main_runner);
+										}
+									
+									});
 								}
 							}
 							catch (IllegalArgumentException e){
@@ -204,16 +287,26 @@ public abstract class Main{
 					else if (line.getType() == Defaults.OPPED_PLAYER ||
 							line.getType() == Defaults.OPPED_SERVER){
 						
-						Player recipient = line.getRecipient();
+						withPlayer(line.getRecipientName(), new Consumer<Player>(){
+							
+							@Override
+							public void accept(Player recipient){
+								recipient.setOp("main", true);
+							}
 						
-						recipient.setOp("main", true);
+						});
 					}
 					else if (line.getType() == Defaults.DEOPPED_PLAYER ||
 							line.getType() == Defaults.DEOPPED_SERVER){
 						
-						Player recipient = line.getRecipient();
+						withPlayer(line.getRecipientName(), new Consumer<Player>(){
+							
+							@Override
+							public void accept(Player recipient){
+								recipient.setOp("main", false);
+							}
 						
-						recipient.setOp("main", false);
+						});
 					}
 					
 					// }} Op:
@@ -224,21 +317,28 @@ public abstract class Main{
 					else if (line.getType() == Defaults.BAN_PLAYER ||
 							line.getType() == Defaults.BAN_SERVER){
 						
-						Player recipient = line.getRecipient();
+						String banMessage = (line.getSubContents() == null) ? null : line.getContents();
 						
-						if (line.getSubContents() == null){
-							recipient.setBan("main", true);
-						}
-						else{
-							recipient.setBan("main", true, line.getContents());
-						}
+						withPlayer(line.getRecipientName(), new Consumer<Player>(){
+							
+							@Override
+							public void accept(Player recipient){
+								recipient.setBan("main", true, banMessage);	//The default message if null.
+							}
+						
+						});
 					}
 					else if (line.getType() == Defaults.PARDON_PLAYER ||
 							line.getType() == Defaults.PARDON_SERVER){
 						
-						Player recipient = line.getRecipient();
+						withPlayer(line.getRecipientName(), new Consumer<Player>(){
+							
+							@Override
+							public void accept(Player recipient){
+								recipient.setBan("main", false);
+							}
 						
-						recipient.setBan("main", false);
+						});
 					}
 					
 					// }} Ban:
@@ -249,16 +349,26 @@ public abstract class Main{
 					else if (line.getType() == Defaults.WHITELIST_ADD_PLAYER ||
 							line.getType() == Defaults.WHITELIST_ADD_SERVER){
 						
-						Player recipient = line.getRecipient();
+						withPlayer(line.getRecipientName(), new Consumer<Player>(){
+							
+							@Override
+							public void accept(Player recipient){
+								recipient.setWhiteList("main", true);
+							}
 						
-						recipient.setWhiteList("main", true);
+						});
 					}
 					else if (line.getType() == Defaults.WHITELIST_REMOVE_PLAYER ||
 							line.getType() == Defaults.WHITELIST_REMOVE_SERVER){
 						
-						Player recipient = line.getRecipient();
+						withPlayer(line.getRecipientName(), new Consumer<Player>(){
+							
+							@Override
+							public void accept(Player recipient){
+								recipient.setWhiteList("main", false);
+							}
 						
-						recipient.setWhiteList("main", false);
+						});
 					}
 					
 					// }} White-list:
@@ -266,7 +376,7 @@ public abstract class Main{
 					// }} Op/Ban/White-list Handler:
 
 					
-					PlugIn_Loader.applyMethod("interpretServerOutputLine", param_types, params);
+					uninterpreted.add(line);
 				}
 				
 				//Dies when this thread is interrupted, which should be done after the server is stopped.
@@ -324,13 +434,13 @@ public abstract class Main{
 		Object[] params = new Object[1];
 		params[0] = "main";
 		
-		created_threads = PlugIn_Loader.applyMethod("onServerStop", param_types, params);
-		waitForThreads(created_threads);
+		PlugIn_Loader.applyPhase("onServerStop", param_types, params);
 		
 		
 		//onShutDown:
-		created_threads = PlugIn_Loader.applyMethod("onShutDown");
-		waitForThreads(created_threads);	//TODO Say that all threads end up waiting for every other thread here.
+		PlugIn_Loader.applyPhase("onShutDown");
+		
+		ProfileStore.close();
 		
 		
 		outputLine_interpreter.interrupt();
@@ -394,18 +504,115 @@ public abstract class Main{
 	
 	
 	/**
-	 * Makes the current thread wait for all the given threads to join.
+	 * Adds the wrapper commands that manage PlugIns while Anvil is running. Both take the jar file of the PlugIn, 
+	 * relative to the PlugIn directory:
+	 * <ul>
+	 * <li>"!unload [jar]" unloads the PlugIn.</li>
+	 * <li>"!reload [jar]" reads the jar file again and loads it, unloading the old PlugIn first. If the server 
+	 * has already started, the new PlugIn is told so.</li>
+	 * </ul>
+	 */
+	private static void addPlugInCommands(){
+		CommandType.addCommandTypeToKnowns(new CommandType("unload", new String[] {"\\S+"},
+				CommandPermissions.SERVER, new CommandExecutionData(){
+			
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T extends CommandResult> T execute(String[] args){
+				if (!PlugIn_Loader.unloadPlugIn(args[0])){
+					return (T) new Failed("\"" + args[0] + "\" isn't loaded.");
+				}
+				
+				return (T) new Success();
+			}
+		
+		}));
+		
+		
+		CommandType.addCommandTypeToKnowns(new CommandType("reload", new String[] {"\\S+"},
+				CommandPermissions.SERVER, new CommandExecutionData(){
+			
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T extends CommandResult> T execute(String[] args){
+				String error = PlugIn_Loader.reloadPlugIn(args[0]);
+				
+				if (error != null){
+					return (T) new Failed(error);
+				}
+				
+				
+				if (server_started){
+					PlugIn_Loader.applyMethod(args[0], "onServerStart", new Class<?>[] {String.class},
+							new Object[] {"main"});
+				}
+				
+				return (T) new Success();
+			}
+		
+		}));
+	}
+	
+	
+	/**
+	 * Runs the action on the Player with the given userName once it's been looked up, so the output line 
+	 * interpreter never waits for Mojang's servers. The actions still run one at a time, in the order they were 
+	 * given, so the Players change in the same order as the output lines that changed them.
+	 * <p>
+	 * The actions all run on the same thread of their own, never on the threads that look the Players up, since 
+	 * the Players' permissions (and what's written to the servers) aren't thread safe.
+	 * <p>
+	 * If the Player can't be looked up, or the action throws, it's printed and the next action runs anyways.
+	 * 
+	 * @param userName String object containing the userName of the Player.
+	 * @param action Consumer object containing the action to run on the Player.
+	 */
+	private static void withPlayer(String userName, Consumer<Player> action){
+		CompletableFuture<Player> lookup = Player.getPlayerAsync(userName);
+		
+		player_updates = player_updates.thenCombineAsync(lookup, new BiFunction<Void, Player, Void>(){
+			
+			@Override
+			public Void apply(Void previous, Player player){
+				action.accept(player);
+				
+				return null;
+			}
+		
+		}, player_updater).exceptionally(new Function<Throwable, Void>(){
+			
+			@Override
+			public Void apply(Throwable thrown){
+				Throwable cause = (thrown.getCause() == null) ? thrown : thrown.getCause();
+				
+				System.err.println("\"" + userName + "\" couldn't be handled: " + cause.getMessage());
+				
+				return null;
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Makes the current thread wait for all the given tasks to finish.
 	 * 
-	 * @param threads Thread array containing all the threads to wait for.
+	 * @param tasks Future array containing all the tasks to wait for.
 	 */
-	public static void waitForThreads(LinkedList<Thread> threads){
-		for (Thread thread : threads){
+	public static void waitForTasks(LinkedList<Future<?>> tasks){
+		for (Future<?> task : tasks){
 			try{
-				thread.join();
+				task.get();
 			}
 			catch (InterruptedException e){
 				//This should never happen.
 			}
+			catch (ExecutionException e){
+				e.getCause().printStackTrace();
+			}
+			catch (CancellationException e){
+				//The PlugIn's watchdog cancelled it, and already announced why.
+			}
 		}
 	}
 }
@@ -1,22 +1,51 @@
 package anvil;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.net.MalformedURLException;
+import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 import anvil.api.PlugIn;
+import anvil.api.ServerOutputLine.ServerOutputLine;
+import anvil.api.ServerOutputLine.ServerOutputLineType;
 
 
 /**
@@ -26,174 +55,133 @@ import anvil.api.PlugIn;
  * @version 1.0
  */
 public abstract class PlugIn_Loader{
-	private static HashMap<Class<?>, PlugIn_Node> loaded_plugins = new HashMap<>();
+	/**
+	 * How often the watchdog checks for stuck PlugIn calls, in milliseconds.
+	 */
+	public static final long WATCHDOG_INTERVAL = 100;
+	
+	/**
+	 * The attribute of a PlugIn's jar manifest that names its PlugIn class.
+	 */
+	public static final String PLUGIN_ATTRIBUTE = "Anvil-PlugIn";
+	
+	private static final String SERVICE_FILE = "META-INF/services/" + PlugIn.class.getName();
+	
+	
+	/**
+	 * How long unloading a PlugIn waits for the calls already in its mailbox to finish, in milliseconds.
+	 */
+	public static final long DRAIN_TIMEOUT = 30000;
+	
+	/**
+	 * How long each lifecycle phase is waited for by default, in milliseconds.
+	 */
+	public static final long DEFAULT_PHASE_TIMEOUT = 30000;
+	
+	
+	private static volatile PlugIn_Registry registry = new PlugIn_Registry(new LinkedList<PlugIn_Node>());
 //	private static LinkedList<Object> loaded_plugins = new LinkedList<>();
 	
-	private static URLClassLoader loader;
+	private static ConcurrentHashMap<String, MethodHandle> method_handles = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, Long> phase_timeouts = new ConcurrentHashMap<>();
+	
+	private static File directory;
+	private static LinkedHashMap<String, Long> load_timings = new LinkedHashMap<>();
+	private static Thread watchdog_thread;
 	
 	
 	/**
-	 * Attempts to load PlugIns from the given jar files with the given class names.
+	 * Attempts to load PlugIns from the jar files in the given directory.
+	 * <p>
+	 * Each jar file names its PlugIn with the {@value #PLUGIN_ATTRIBUTE} attribute of its manifest, or with a 
+	 * "META-INF/services/anvil.api.PlugIn" file, the same one {@link java.util.ServiceLoader} reads. Jar files 
+	 * that do neither are searched for a class implementing the PlugIn interface. The jar files are opened and 
+	 * searched in parallel.
 	 * <p>
 	 * If the PlugIn fails to load for any reason, it will be added to the failure HashMap. This will detail 
-	 * which PlugIn failed to load and why.
+	 * which PlugIn failed to load and why. How long each jar file took to load is kept, see 
+	 * {@link #getLoadTimings()}.
 	 * 
 	 * @param plugIn_directory File object that contains the PlugIn directory to load.
 	 * @return HashMap containing the PlugIns that failed to load.
 	 */
 	public static HashMap<String, String> loadPlugIns(File plugIn_directory){
-		if (loader == null){
-			File[] jars = plugIn_directory.listFiles();
+		if (directory == null){
+			directory = plugIn_directory;
 			
+			File[] jars = plugIn_directory.listFiles(new FileFilter(){
+				
+				@Override
+				public boolean accept(File file){
+					return file.isFile() && file.getName().toLowerCase().endsWith(".jar");
+				}
 			
-			HashMap<String, String> load_errors = new HashMap<>(jars.length);
+			});
 			
 			
-			LinkedList<URL> URLs_list = new LinkedList<>();
-			HashMap<String, String> class_names = new HashMap<>(jars.length);
+			HashMap<String, String> load_errors = new HashMap<>(jars.length);
 			
-			// {{ Load Class Names:
 			
+			LinkedHashMap<String, File> jar_files = new LinkedHashMap<>(jars.length);
 			
 			for (int i = 0; i < jars.length; ++i){
-				ZipFile zip = null;
 				try{
-					zip = new ZipFile(jars[i]);
-					
-					Enumeration<? extends ZipEntry> entries = zip.entries();
-					while (entries.hasMoreElements()) {
-						ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-						
-						if (zipEntry.getName().endsWith(".class")){
-							String fix = zipEntry.getName().replace('/', '.');
-							fix = fix.substring(0, fix.lastIndexOf('.'));
-							
-							class_names.put(jars[i].getAbsolutePath(), fix);
-							
-							
-							try{
-								URLs_list.add(jars[i].toURI().toURL());
-							}
-							catch (MalformedURLException e){
-								//This won't happen.
-							}
-						}
-					}
-					
-					
-					zip.close();
-				}
-				catch (ZipException e){
-					String error_text = "\"" + jars[i].getName() + "\" is corrupted.";
-							
-					load_errors.put(jars[i].getAbsolutePath(), error_text);
+					File jar = jars[i].getCanonicalFile();
 					
-					continue;
+					jar_files.put(jar.getAbsolutePath(), jar);
 				}
 				catch (IOException e){
 					String error_text = "\"" + jars[i].getName() + "\" couldn't be opened.";
 					
 					load_errors.put(jars[i].getAbsolutePath(), error_text);
-					
-					continue;
 				}
 			}
 			
-			// }} Load Class Names:
-			
+			// {{ Find the PlugIn Classes:
 			
-			loader = new URLClassLoader(URLs_list.toArray(new URL[0]), PlugIn_Loader.class.getClassLoader());
+			LinkedHashMap<String, Future<PlugIn_Scan>> scans = new LinkedHashMap<>(jar_files.size());
 			
+			ExecutorService scanners = Executors.newFixedThreadPool(Math.max(1,
+					Math.min(jar_files.size(), Runtime.getRuntime().availableProcessors())));
 			
-			for (String jar : class_names.keySet()){
-				String class_name = class_names.get(jar);
+			for (String jar : jar_files.keySet()){
+				File jar_file = jar_files.get(jar);
+				
+				scans.put(jar, scanners.submit(new Callable<PlugIn_Scan>(){
+					
+					@Override
+					public PlugIn_Scan call() throws IOException, ClassNotFoundException{
+						return scanPlugIn(jar_file);
+					}
 				
+				}));
+			}
+			
+			scanners.shutdown();
+			
+			// }} Find the PlugIn Classes:
+			
+			
+			for (String jar : scans.keySet()){
+				String error_text = null;
 				
-				Class<?> plugIn_class = null;
 				try{
-					plugIn_class = loader.loadClass(class_name);//.asSubclass(PlugIn.class);
-					//plugIn_class = Class.forName("testing.Test", true, loader);//.asSubclass(PlugIn.class);
+					error_text = loadPlugIn(jar, scans.get(jar).get());
 				}
-				catch (ClassNotFoundException e){
-					//This won't happen.
+				catch (ExecutionException e){
+					error_text = getScanError(jar, e.getCause());
 				}
-				
-				
-				//Check if it's a PlugIn:
-				Class<?>[] implementations = plugIn_class.getInterfaces();
-				
-				for (int q = 0; q < implementations.length; ++q){
-					if (!implementations[q].getName().equals(PlugIn.class.getName())){
-						String error_text = "\"" + class_name + "\" does not implement the PlugIn interface."; 
-						
-						load_errors.put(class_name, error_text);
-						
-						continue;
-					}	
+				catch (InterruptedException e){
+					//This won't happen.
 				}
 				
-				
-				Object instance = null;
-				
-				// {{ Instantiate the PlugIn:
-				
-				try {
-					instance = plugIn_class.getConstructor().newInstance();
-				}
-				catch (InstantiationException e){
-					String error_text = "\"" + class_name + "\" is an abstract class."; 
-					
-					load_errors.put(jar, error_text);
-					
-					continue;
-				}
-				catch (IllegalAccessException e){
-					String error_text = "\"" + class_name + "\" is hiding its default constructor.";
-					
-					load_errors.put(jar, error_text);
-					
-					continue;
-				}
-				catch (InvocationTargetException e) {
-					String error_text = "\"" + class_name + "\"'s default constructor threw an exception.";
-					
-					load_errors.put(jar, error_text);
-					
-					continue;
-				}
-				catch (NoSuchMethodException e) {
-					String error_text = "\"" + class_name + "\" is hiding its default constructor.";
-					
-					load_errors.put(jar, error_text);
-					
-					continue;
-				}
-				catch (IllegalArgumentException | SecurityException e) {
-					String error_text = "\"" + class_name + "\" threw this:" + System.lineSeparator()
-						+ System.lineSeparator() + e.getMessage();
-					
+				if (error_text != null){
 					load_errors.put(jar, error_text);
-					
-					continue;
 				}
-				
-				// }} Instantiate the PlugIn:
-				
-				
-				loaded_plugins.put(plugIn_class, new PlugIn_Node(jar, instance));
-//				loaded_plugins.add(instance);
 			}
 			
 			
-			//Never unload the ClassLoader, unless the wrapper is shutting down, which it'll do itself.
-			//This, however, does mean that you can no longer alter the PlugIns at runtime.
-			//TODO Mark that somewhere.
-//			try {
-//				loader.close();
-//			}
-//			catch (IOException e){
-//				//Do nothing.
-//			}
+			startWatchdog();
 			
 			
 			return load_errors;
@@ -205,354 +193,1449 @@ public abstract class PlugIn_Loader{
 	
 	
 	/**
-	 * Acts as a node for the loaded_plugins HashMap. Just stores the useful information.
+	 * Opens the jar file in its own class loader and finds its PlugIn class. If anything goes wrong, the class 
+	 * loader is closed.
+	 * 
+	 * @param jar File object containing the jar file of the PlugIn.
+	 * @return PlugIn_Scan object containing the class loader and PlugIn class of the jar file.
+	 * @throws IOException When the jar file is corrupted or couldn't be opened.
+	 * @throws ClassNotFoundException When the class the jar file names doesn't exist.
 	 */
-	private static class PlugIn_Node{
-		public String file;
-		public Object instance;
+	private static PlugIn_Scan scanPlugIn(File jar) throws IOException, ClassNotFoundException{
+		long start = System.nanoTime();
 		
-		public PlugIn_Node(String file, Object instance){
-			this.file = file;
-			this.instance = instance;
+		URLClassLoader loader = new URLClassLoader(new URL[] {jar.toURI().toURL()},
+				PlugIn_Loader.class.getClassLoader());
+		
+		try{
+			return new PlugIn_Scan(loader, findPlugInClass(jar, loader), System.nanoTime() - start);
+		}
+		catch (IOException | ClassNotFoundException | RuntimeException e){
+			closeLoader(loader);
+			
+			throw e;
 		}
 	}
 	
 	
-//	/**
-//	 * Applies the method to all the loaded PlugIns. This will run the method in the PlugIn with the given name.
-//	 * <p>
-//	 * If, for whatever reason, any of these invoked method throw an unhandeled throwable, the 
-//	 * {@link PlugIn#onThrowable(Throwable)} method is invoked, passing the thrown throwable. The PlugIn is then 
-//	 * unloaded entirely from the wrapper, until it is restarted.
-//	 * 
-//	 * @param method_name The name of the methods to invoke.
-//	 * @return HashMap object containing error information from attempting to invoke a the method.
-//	 */
-//	public static HashMap<String, String> applyMethod(String method_name){
-//		HashMap<String, String> run_errors = null;
-//		
-//		LinkedList<Class<?>> remove_me = new LinkedList<>();
-//		
-//		for (Class<?> clazz : loaded_plugins.keySet()){
-//			PlugIn_Node node = loaded_plugins.get(clazz);
-//			
-//			Method meth = null;
-//			try{
-//				meth = clazz.getMethod(method_name);
-//			}
-//			catch (NoSuchMethodException | SecurityException | NullPointerException e){
-//				throw new IllegalArgumentException("Method doesn't exist.");	//GG Garrett, ya fucked up.
-//			}
-//			
-//			
-//			try{
-//				meth.invoke(node.instance);
-//			}
-//			catch (IllegalAccessException e){
-//				throw new IllegalArgumentException("Can't access method.");	//GG Garrett, ya fucked up.
-//			}
-//			catch (IllegalArgumentException e){
-//				throw new IllegalArgumentException("Bad arguments.");	//GG Garrett, ya fucked up.
-//			}
-//			catch (InvocationTargetException e){
-//				
-//				// {{ Handle Throwable in PlugIn Method:
-//				
-//				if (run_errors == null){
-//					run_errors = new HashMap<>(loaded_plugins.size());
-//				}
-//				
-//				
-//				Throwable thrown = e.getTargetException();
-//				
-//				run_errors.put(node.file, thrown.getMessage());
-//				
-//				
-//				Class<?>[] param_types = new Class<?>[1];
-//				param_types[0] = Throwable.class;
-//				
-//				try{
-//					meth = clazz.getMethod("onThrowable", param_types);
-//				}
-//				catch (NoSuchMethodException | SecurityException | NullPointerException e1) {
-//					//This won't happen.
-//				}
-//				
-//				Object[] params = new Object[] {thrown};
-//				
-//				try{
-//					meth.invoke(clazz, params);
-//				}
-//				catch (Throwable e1) {
-//					//They fucked up twice, just ignore it.
-//				}
-//				
-//				// }} Handle Throwable in PlugIn Method:
-//				
-//				
-//				remove_me.add(clazz);
-//			}
-//		}
-//		
-//		for (Class<?> rem : remove_me){
-//			loaded_plugins.remove(rem);
-//		}
-//		
-//		
-//		return run_errors;
-//	}
+	/**
+	 * Gets the load error of a jar file that couldn't be scanned.
+	 * 
+	 * @param jar String object containing the jar file of the PlugIn.
+	 * @param thrown Throwable object containing what was thrown while scanning the jar file.
+	 * @return String object containing the load error.
+	 */
+	private static String getScanError(String jar, Throwable thrown){
+		String jar_name = new File(jar).getName();
+		
+		if (thrown instanceof ZipException){
+			return "\"" + jar_name + "\" is corrupted.";
+		}
+		else if (thrown instanceof ClassNotFoundException){
+			return "\"" + jar_name + "\" names \"" + thrown.getMessage() + "\" as its PlugIn, but it doesn't "
+					+ "exist.";
+		}
+		else{
+			return "\"" + jar_name + "\" couldn't be opened.";
+		}
+	}
 	
 	
 	/**
-	 * Applies the method to all the loaded PlugIns. This will run the method in the PlugIn with the given name 
-	 * and arguments.
-	 * <p>
-	 * If, for whatever reason, any of these invoked method throw an unhandeled throwable, the 
-	 * {@link PlugIn#onThrowable(Throwable)} method is invoked, passing the thrown throwable. The PlugIn is then 
-	 * unloaded entirely from the wrapper, until it is restarted.
+	 * Instantiates the PlugIn found by scanning its jar file, and adds it to the loaded PlugIns. If it fails to 
+	 * load, its class loader is closed.
 	 * 
-	 * @param method_name The name of the methods to invoke.
-	 * @return Thread array containing all the threads created to run the methods.
+	 * @param jar String object containing the jar file of the PlugIn.
+	 * @param scan PlugIn_Scan object containing the class loader and PlugIn class of the jar file.
+	 * @return String object containing the reason the PlugIn failed to load. Null if it loaded.
 	 */
-	public static LinkedList<Thread> applyMethod(String method_name){
-		LinkedList<Thread> return_threads = new LinkedList<>();
+	private static String loadPlugIn(String jar, PlugIn_Scan scan){
+		long start = System.nanoTime();
 		
+		String error_text = null;
 		
-		Set<Class<?>> keySet = null;
 		
-		synchronized (loaded_plugins){
-			keySet = new HashSet<>(loaded_plugins.keySet());	
-		}
+		Class<?> plugIn_class = scan.plugIn_class;
+		String class_name = (plugIn_class == null) ? null : plugIn_class.getName();
 		
+		PlugIn instance = null;
 		
-		for (Class<?> clazz : keySet){
+		if (plugIn_class == null){
+			error_text = "\"" + new File(jar).getName() + "\" doesn't contain a PlugIn.";
+		}
+		//Check if it's a PlugIn:
+		else if (!PlugIn.class.isAssignableFrom(plugIn_class)){
+			error_text = "\"" + class_name + "\" does not implement the PlugIn interface.";
+		}
+		else{
 			
-			Thread created = new Thread(){
-				Class<?> stored_clazz = clazz;
-				PlugIn_Node node = null;
-				
-				String _method_name = method_name;
-				
-				
-				@Override
-				public void run(){
-					
-					synchronized (loaded_plugins){
-						node = loaded_plugins.get(clazz);	
-					}
-							
-					
-					if (node != null){
-						Method meth = null;
-						try{
-							meth = stored_clazz.getMethod(method_name);
-						}
-						catch (NoSuchMethodException | SecurityException | NullPointerException e){
-							throw new IllegalArgumentException("Method doesn't exist.");//GG Garrett, ya fucked up.
-						}
-						
-						
-						try{
-							meth.invoke(node.instance);
-						}
-						catch (IllegalAccessException e){
-							throw new IllegalArgumentException("Can't access method.");	//GG Garrett, ya fucked up.
-						}
-						catch (IllegalArgumentException e){
-							throw new IllegalArgumentException("Bad arguments.");	//GG Garrett, ya fucked up.
-						}
-						catch (InvocationTargetException e){
-							
-							// {{ Handle Throwable in PlugIn Method:
-							
-							Throwable thrown = e.getTargetException();
-							
-							
-							// {{ Invoke "onThrowable"
-							
-							Class<?>[] param_types = new Class<?>[1];
-							param_types[0] = Throwable.class;
-							
-							new Thread(){
-								
-								@Override
-								public void run(){
-									
-									Method meth = null;
-									try{
-										meth = stored_clazz.getMethod("onThrowable", param_types);
-									}
-									catch (NoSuchMethodException | SecurityException | NullPointerException e1){
-										//This won't happen.
-									}
-									
-									Object[] params = new Object[] {thrown};
-									
-									try{
-										meth.invoke(node.instance, params);
-									}
-									catch (Throwable e1) {
-										//They fucked up twice, just ignore it.
-									}
-								}
-								
-							}.start();
-							
-							// }} Invoke "onThrowable"
-							
-							announceUnload(node.file, _method_name, thrown);
-							
-							// }} Handle Throwable in PlugIn Method:
-							
-							
-							synchronized (loaded_plugins){
-								loaded_plugins.remove(stored_clazz);	
-							}
-						}
-					}
-					
-				}
-				
-			};
+			// {{ Instantiate the PlugIn:
 			
+			try {
+				instance = plugIn_class.asSubclass(PlugIn.class).getConstructor().newInstance();
+			}
+			catch (InstantiationException e){
+				error_text = "\"" + class_name + "\" is an abstract class.";
+			}
+			catch (IllegalAccessException e){
+				error_text = "\"" + class_name + "\" is hiding its default constructor.";
+			}
+			catch (InvocationTargetException e) {
+				error_text = "\"" + class_name + "\"'s default constructor threw an exception.";
+			}
+			catch (NoSuchMethodException e) {
+				error_text = "\"" + class_name + "\" is hiding its default constructor.";
+			}
+			catch (IllegalArgumentException | SecurityException e) {
+				error_text = "\"" + class_name + "\" threw this:" + System.lineSeparator()
+					+ System.lineSeparator() + e.getMessage();
+			}
 			
-			created.start();
+			// }} Instantiate the PlugIn:
+		
+		}
+		
+		
+		ServerOutputLineType[] interpreted_types = null;
+		String[] dependencies = null;
+		
+		if (instance != null){
+			try{
+				interpreted_types = instance.getInterpretedTypes();
+			}
+			catch (Throwable e){
+				error_text = "\"" + class_name + "\" threw this when asked for its interpreted types:"
+						+ System.lineSeparator() + System.lineSeparator() + e.getMessage();
+			}
+		}
+		
+		if (instance != null && error_text == null){
+			try{
+				dependencies = instance.getDependencies();
+			}
+			catch (Throwable e){
+				error_text = "\"" + class_name + "\" threw this when asked for its dependencies:"
+						+ System.lineSeparator() + System.lineSeparator() + e.getMessage();
+			}
+		}
+		
+		
+		if (error_text != null){
+			closeLoader(scan.loader);
 			
-			return_threads.add(created);
+			return error_text;
+		}
+		
+		
+		register(new PlugIn_Node(jar, instance, scan.loader, interpreted_types, dependencies));
+//		loaded_plugins.add(instance);
+		
+		synchronized (load_timings){
+			load_timings.put(jar, scan.time + System.nanoTime() - start);
 		}
 		
 		
-		return return_threads;
+		return null;
 	}
 	
 	
 	/**
-	 * Applies the method to all the loaded PlugIns. This will run the method in the PlugIn with the given name 
-	 * and arguments.
+	 * Unloads the PlugIn in the given jar file. The PlugIn stops getting new calls right away. The output lines 
+	 * already in its mailbox are dropped, but its other calls are finished first, followed by its 
+	 * {@link PlugIn#onShutDown()} method. Then its class loader is closed.
 	 * <p>
-	 * If, for whatever reason, any of these invoked method throw an unhandeled throwable, the 
-	 * {@link PlugIn#onThrowable(Throwable)} method is invoked, passing the thrown throwable. The PlugIn is then 
-	 * unloaded entirely from the wrapper, until it is restarted.
+	 * Calls that are still running after {@value #DRAIN_TIMEOUT} milliseconds are cancelled.
 	 * 
-	 * @param method_name The name of the methods to invoke.
-	 * @param arg_types Class<?> array containing the types of the arguments passed to the method.
-	 * @param args Object array containing the arguments to pass to the method.
-	 * @return Thread array containing all the threads created to run the methods.
+	 * @param jar String object containing the jar file of the PlugIn. Relative to the PlugIn directory, unless 
+	 * it's absolute.
+	 * @return Whether or not a PlugIn was unloaded. False if the jar file wasn't loaded.
 	 */
-	public static LinkedList<Thread> applyMethod(String method_name, Class<?>[] arg_types, Object[] args){
-		if (arg_types.length != args.length){
-			throw new IllegalArgumentException("The argument types and arguments array aren't the same length.");
+	public static boolean unloadPlugIn(String jar){
+		String file = getPlugInFile(jar);
+		
+		PlugIn_Node node = unregister(file, null);
+		
+		if (node == null){
+			return false;
 		}
 		
 		
-		LinkedList<Thread> return_threads = new LinkedList<>();
+		PlugIn_Task shutDown = new PlugIn_Task(node, "onShutDown", new PlugIn_Call(){
+			
+			@Override
+			public void call(PlugIn instance){
+				instance.onShutDown();
+			}
+		
+		});
 		
+		node.mailbox_queue.dropOutputLines();
+		submit(shutDown);
 		
-		Set<Class<?>> keySet = null;
+		ExecutorService mailbox = node.mailbox;
+		mailbox.shutdown();
 		
-		synchronized (loaded_plugins){
-			keySet = new HashSet<>(loaded_plugins.keySet());	
+		
+		try{
+			if (!mailbox.awaitTermination(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)){
+				for (Runnable waiting : mailbox.shutdownNow()){
+					((Future<?>) waiting).cancel(false);
+				}
+			}
+		}
+		catch (InterruptedException e){
+			//Close it anyways.
 		}
 		
+		synchronized (PlugIn_Loader.class){
+			node.loaded = false;
+		}
 		
-		for (Class<?> clazz : keySet){
-			
-			Thread created = new Thread(){
-				Class<?> stored_clazz = clazz;
-				PlugIn_Node node = null;
+		closeLoader(node.loader);
+		
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Reloads the PlugIn in the given jar file, reading the jar file all over again. If the PlugIn is loaded, 
+	 * it's unloaded first, see {@link #unloadPlugIn(String)}. Once loaded, its {@link PlugIn#onLoad()} method is 
+	 * put in its mailbox.
+	 * <p>
+	 * This can also load a jar file that wasn't loaded before.
+	 * 
+	 * @param jar String object containing the jar file of the PlugIn. Relative to the PlugIn directory, unless 
+	 * it's absolute.
+	 * @return String object containing the reason the PlugIn failed to load. Null if it loaded.
+	 */
+	public static String reloadPlugIn(String jar){
+		String file = getPlugInFile(jar);
+		
+		unloadPlugIn(file);
+		
+		
+		String error_text = null;
+		
+		try{
+			error_text = loadPlugIn(file, scanPlugIn(new File(file)));
+		}
+		catch (IOException | ClassNotFoundException e){
+			error_text = getScanError(file, e);
+		}
+		
+		if (error_text != null){
+			return error_text;
+		}
+		
+		
+		applyMethod(Collections.singletonList(file), "onLoad", new PlugIn_Call(){
+			
+			@Override
+			public void call(PlugIn instance){
+				instance.onLoad();
+			}
+		
+		});
+		
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Gets the file the loaded PlugIns are known by for the given jar file.
+	 * 
+	 * @param jar String object containing the jar file. Relative to the PlugIn directory, unless it's absolute.
+	 * @return String object containing the canonical path of the jar file.
+	 */
+	private static String getPlugInFile(String jar){
+		File file = new File(jar);
+		
+		if (!file.isAbsolute()){
+			file = new File(directory, jar);
+		}
+		
+		
+		try{
+			return file.getCanonicalPath();
+		}
+		catch (IOException e){
+			return file.getAbsolutePath();
+		}
+	}
+	
+	
+	/**
+	 * Closes the class loader of a PlugIn.
+	 * 
+	 * @param loader URLClassLoader object containing the class loader to close.
+	 */
+	private static void closeLoader(URLClassLoader loader){
+		try{
+			loader.close();
+		}
+		catch (IOException e){
+			//Do nothing, the PlugIn is gone either way.
+		}
+	}
+	
+	
+	/**
+	 * Holds what was found by scanning a PlugIn's jar file.
+	 */
+	private static class PlugIn_Scan{
+		public URLClassLoader loader;
+		public Class<?> plugIn_class;
+		public long time;
+		
+		public PlugIn_Scan(URLClassLoader loader, Class<?> plugIn_class, long time){
+			this.loader = loader;
+			this.plugIn_class = plugIn_class;
+			this.time = time;
+		}
+	}
+	
+	
+	/**
+	 * Finds the PlugIn class of the jar file. The class named by the jar's manifest comes first, then the class 
+	 * named by its service file. If it names neither, the first class in it that implements the PlugIn interface 
+	 * is used.
+	 * 
+	 * @param jar File object containing the jar file to search.
+	 * @param loader URLClassLoader object containing the class loader of the jar file.
+	 * @return Class object containing the class of the PlugIn. Null if the jar file doesn't contain one.
+	 * @throws ZipException When the jar file is corrupted.
+	 * @throws IOException When the jar file couldn't be opened.
+	 * @throws ClassNotFoundException When the class the jar file names doesn't exist.
+	 */
+	private static Class<?> findPlugInClass(File jar, URLClassLoader loader)
+			throws ZipException, IOException, ClassNotFoundException{
+		
+		
+		try (JarFile jar_file = new JarFile(jar)){
+			String class_name = null;
+			
+			Manifest manifest = jar_file.getManifest();
+			
+			if (manifest != null){
+				class_name = manifest.getMainAttributes().getValue(PLUGIN_ATTRIBUTE);
+			}
+			
+			
+			ZipEntry service = jar_file.getEntry(SERVICE_FILE);
+			
+			if (class_name == null && service != null){
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+						jar_file.getInputStream(service), StandardCharsets.UTF_8))){
+					
+					String line;
+					while (class_name == null && (line = reader.readLine()) != null){
+						int comment = line.indexOf('#');
+						
+						if (comment >= 0){
+							line = line.substring(0, comment);
+						}
+						
+						if (!line.trim().isEmpty()){
+							class_name = line;
+						}
+					}
+				}
+			}
+			
+			
+			if (class_name != null){
+				return loader.loadClass(class_name.trim());
+			}
+			
+			
+			// {{ Search for the PlugIn:
+			
+			Enumeration<JarEntry> entries = jar_file.entries();
+			while (entries.hasMoreElements()){
+				String name = entries.nextElement().getName();
+				
+				if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")){
+					continue;
+				}
+				
+				
+				name = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+				
+				try{
+					Class<?> clazz = loader.loadClass(name);
+					
+					if (PlugIn.class.isAssignableFrom(clazz) && !clazz.isInterface()
+							&& !Modifier.isAbstract(clazz.getModifiers())){
+						
+						return clazz;
+					}
+				}
+				catch (ClassNotFoundException | LinkageError e){
+					//Not a PlugIn, at least not one that can be loaded.
+				}
+			}
+			
+			// }} Search for the PlugIn:
+			
+			
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * Gets how long each jar file took to load, from opening it to having its PlugIn ready to run. Jar files 
+	 * that failed to load aren't included.
+	 * 
+	 * @return LinkedHashMap containing the load time of each jar file in nanoseconds, by file.
+	 */
+	public static LinkedHashMap<String, Long> getLoadTimings(){
+		synchronized (load_timings){
+			return new LinkedHashMap<>(load_timings);
+		}
+	}
+	
+	
+	/**
+	 * Starts the thread that checks the loaded PlugIns for stuck calls every {@value #WATCHDOG_INTERVAL} 
+	 * milliseconds.
+	 */
+	private static void startWatchdog(){
+		watchdog_thread = new Thread("PlugIn Watchdog"){
+			
+			@Override
+			public void run(){
+				while (true){
+					try{
+						Thread.sleep(WATCHDOG_INTERVAL);
+					}
+					catch (InterruptedException e){
+						return;
+					}
+					
+					checkWatchdogs();
+				}
+			}
+		
+		};
+		
+		watchdog_thread.setDaemon(true);
+		watchdog_thread.start();
+	}
+	
+	
+	/**
+	 * Adds the PlugIn to the registry, publishing a new snapshot of it.
+	 * 
+	 * @param node PlugIn_Node object containing the PlugIn.
+	 */
+	private static synchronized void register(PlugIn_Node node){
+		LinkedHashMap<String, PlugIn_Node> nodes = new LinkedHashMap<>(registry.nodes);
+		nodes.put(node.file, node);
+		
+		registry = new PlugIn_Registry(nodes.values());
+	}
+	
+	
+	/**
+	 * Removes the PlugIn from the registry, publishing a new snapshot of it.
+	 * 
+	 * @param file String object containing the file of the PlugIn.
+	 * @param expected PlugIn_Node object containing the PlugIn to remove. Null to remove whichever PlugIn is 
+	 * loaded from the file.
+	 * @return PlugIn_Node object containing the PlugIn removed. Null if nothing was removed.
+	 */
+	private static synchronized PlugIn_Node unregister(String file, PlugIn_Node expected){
+		PlugIn_Node node = registry.nodes.get(file);
+		
+		if (node == null || (expected != null && node != expected)){
+			return null;
+		}
+		
+		
+		LinkedHashMap<String, PlugIn_Node> nodes = new LinkedHashMap<>(registry.nodes);
+		nodes.remove(file);
+		
+		registry = new PlugIn_Registry(nodes.values());
+		
+		
+		return node;
+	}
+	
+	
+	/**
+	 * An immutable snapshot of the loaded PlugIns, along with the index of which PlugIns interpret which 
+	 * ServerOutputLineTypes.
+	 * <p>
+	 * Loading or unloading a PlugIn publishes a whole new snapshot instead of changing this one, so whoever is 
+	 * dispatching only has to read the volatile field once, with no locks, and can keep using what it read for 
+	 * as long as it wants. Loads and unloads are rare, dispatches happen on every output line.
+	 */
+	private static class PlugIn_Registry{
+		public final Map<String, PlugIn_Node> nodes;
+		public final PlugIn_Node[] line_interpreters;
+		public final HashMap<ServerOutputLineType, PlugIn_Node[]> type_interpreters;
+		
+		/**
+		 * Constructs a PlugIn_Registry object with the given PlugIns.
+		 * 
+		 * @param loaded Collection containing the loaded PlugIns, in the order they were loaded.
+		 */
+		public PlugIn_Registry(Collection<PlugIn_Node> loaded){
+			LinkedHashMap<String, PlugIn_Node> nodes = new LinkedHashMap<>();
+			LinkedList<PlugIn_Node> line_interpreters = new LinkedList<>();
+			LinkedHashMap<ServerOutputLineType, LinkedHashSet<PlugIn_Node>> typed = new LinkedHashMap<>();
+			
+			for (PlugIn_Node node : loaded){
+				nodes.put(node.file, node);
+				
+				if (node.interpreted_types == null){
+					line_interpreters.add(node);
+					
+					continue;
+				}
+				
+				
+				for (ServerOutputLineType type : node.interpreted_types){
+					if (type == null){
+						continue;
+					}
+					
+					
+					LinkedHashSet<PlugIn_Node> interpreters = typed.get(type);
+					
+					if (interpreters == null){
+						interpreters = new LinkedHashSet<>();
+						typed.put(type, interpreters);
+					}
+					
+					interpreters.add(node);
+				}
+			}
+			
+			
+			this.nodes = Collections.unmodifiableMap(nodes);
+			this.line_interpreters = line_interpreters.toArray(new PlugIn_Node[0]);
+			
+			//Every type's interpreters include the ones that interpret everything, so a lookup is just one get:
+			type_interpreters = new HashMap<>();
+			
+			for (ServerOutputLineType type : typed.keySet()){
+				LinkedHashSet<PlugIn_Node> interpreters = new LinkedHashSet<>(line_interpreters);
+				interpreters.addAll(typed.get(type));
+				
+				type_interpreters.put(type, interpreters.toArray(new PlugIn_Node[0]));
+			}
+		}
+		
+		
+		/**
+		 * Gets the PlugIns that want to interpret output lines of the given type. Nothing is copied.
+		 * 
+		 * @param type ServerOutputLineType object containing the type of the output line. Null for generic lines.
+		 * @return PlugIn_Node array containing the PlugIns, which must not be changed.
+		 */
+		public PlugIn_Node[] getInterpreters(ServerOutputLineType type){
+			if (type == null){
+				return line_interpreters;
+			}
+			
+			PlugIn_Node[] interpreters = type_interpreters.get(type);
+			
+			return (interpreters == null) ? line_interpreters : interpreters;
+		}
+	}
+	
+	
+	/**
+	 * Acts as a node for the PlugIn_Registry. Just stores the useful information.
+	 * <p>
+	 * Every PlugIn gets its own mailbox: a single, long-lived thread that runs the PlugIn's methods one at a time, 
+	 * in the order they were applied. Output lines reach each PlugIn in the order the server wrote them, and no 
+	 * threads are made per call. The mailbox only holds so many output lines, and only 
+	 * {@link PlugIn#onShutDown()} goes ahead of them, see {@link PlugIn_Mailbox}.
+	 * <p>
+	 * The instance is kept as a PlugIn, so the methods Anvil runs on every output line are plain interface calls.
+	 * <p>
+	 * The mailbox is never replaced, not even when a call gets stuck, so no two calls of the PlugIn ever run at 
+	 * the same time.
+	 * <p>
+	 * Every PlugIn also gets its own class loader, which is closed once the PlugIn is unloaded.
+	 */
+	private static class PlugIn_Node{
+		public String file;
+		public PlugIn instance;
+		public URLClassLoader loader;
+		public final ExecutorService mailbox;
+		public final PlugIn_Mailbox mailbox_queue = new PlugIn_Mailbox();
+		public PlugIn_Watchdog watchdog;
+		public ServerOutputLineType[] interpreted_types;
+		public String[] dependencies;
+		public volatile boolean loaded = true;
+		
+		public PlugIn_Node(String file, PlugIn instance, URLClassLoader loader,
+				ServerOutputLineType[] interpreted_types, String[] dependencies){
+			
+			this.file = file;
+			this.instance = instance;
+			this.loader = loader;
+			this.interpreted_types = interpreted_types;
+			this.dependencies = (dependencies == null) ? new String[0] : dependencies;
+			
+			mailbox = newMailbox(instance, mailbox_queue);
+			watchdog = new PlugIn_Watchdog(file);
+		}
+		
+		
+		public static ExecutorService newMailbox(PlugIn instance, PlugIn_Mailbox queue){
+			return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue, new ThreadFactory(){
+				
+				@Override
+				public Thread newThread(Runnable r){
+					Thread thread = new Thread(r, "PlugIn: " + instance.getClass().getName());
+					thread.setDaemon(true);
+					
+					return thread;
+				}
+			
+			});
+		}
+	}
+	
+	
+//	/**
+//	 * Applies the method to all the loaded PlugIns. This will run the method in the PlugIn with the given name.
+//	 * <p>
+//	 * If, for whatever reason, any of these invoked method throw an unhandeled throwable, the 
+//	 * {@link PlugIn#onThrowable(Throwable)} method is invoked, passing the thrown throwable. The PlugIn is then 
+//	 * unloaded entirely from the wrapper, until it is restarted.
+//	 * 
+//	 * @param method_name The name of the methods to invoke.
+//	 * @return HashMap object containing error information from attempting to invoke a the method.
+//	 */
+//	public static HashMap<String, String> applyMethod(String method_name){
+//		HashMap<String, String> run_errors = null;
+//		
+//		LinkedList<Class<?>> remove_me = new LinkedList<>();
+//		
+//		for (Class<?> clazz : loaded_plugins.keySet()){
+//			PlugIn_Node node = loaded_plugins.get(clazz);
+//			
+//			Method meth = null;
+//			try{
+//				meth = clazz.getMethod(method_name);
+//			}
+//			catch (NoSuchMethodException | SecurityException | NullPointerException e){
+//				throw new IllegalArgumentException("Method doesn't exist.");	//GG Garrett, ya fucked up.
+//			}
+//			
+//			
+//			try{
+//				meth.invoke(node.instance);
+//			}
+//			catch (IllegalAccessException e){
+//				throw new IllegalArgumentException("Can't access method.");	//GG Garrett, ya fucked up.
+//			}
+//			catch (IllegalArgumentException e){
+//				throw new IllegalArgumentException("Bad arguments.");	//GG Garrett, ya fucked up.
+//			}
+//			catch (InvocationTargetException e){
+//				
+//				// {{ Handle Throwable in PlugIn Method:
+//				
+//				if (run_errors == null){
+//					run_errors = new HashMap<>(loaded_plugins.size());
+//				}
+//				
+//				
+//				Throwable thrown = e.getTargetException();
+//				
+//				run_errors.put(node.file, thrown.getMessage());
+//				
+//				
+//				Class<?>[] param_types = new Class<?>[1];
+//				param_types[0] = Throwable.class;
+//				
+//				try{
+//					meth = clazz.getMethod("onThrowable", param_types);
+//				}
+//				catch (NoSuchMethodException | SecurityException | NullPointerException e1) {
+//					//This won't happen.
+//				}
+//				
+//				Object[] params = new Object[] {thrown};
+//				
+//				try{
+//					meth.invoke(clazz, params);
+//				}
+//				catch (Throwable e1) {
+//					//They fucked up twice, just ignore it.
+//				}
+//				
+//				// }} Handle Throwable in PlugIn Method:
+//				
+//				
+//				remove_me.add(clazz);
+//			}
+//		}
+//		
+//		for (Class<?> rem : remove_me){
+//			loaded_plugins.remove(rem);
+//		}
+//		
+//		
+//		return run_errors;
+//	}
+	
+	
+	/**
+	 * Applies the method to all the loaded PlugIns. This will run the method in the PlugIn with the given name 
+	 * and arguments.
+	 * <p>
+	 * If, for whatever reason, any of these invoked method throw an unhandeled throwable, the 
+	 * {@link PlugIn#onThrowable(Throwable)} method is invoked, passing the thrown throwable. The PlugIn is then 
+	 * unloaded entirely from the wrapper, until it is restarted.
+	 * 
+	 * @param method_name The name of the methods to invoke.
+	 * @return Future array containing all the tasks created to run the methods.
+	 */
+	public static LinkedList<Future<?>> applyMethod(String method_name){
+		return applyMethod(method_name, new Class<?>[0], new Object[0]);
+	}
+	
+	
+	/**
+	 * Applies the method to all the loaded PlugIns. This will run the method in the PlugIn with the given name 
+	 * and arguments.
+	 * <p>
+	 * If, for whatever reason, any of these invoked method throw an unhandeled throwable, the 
+	 * {@link PlugIn#onThrowable(Throwable)} method is invoked, passing the thrown throwable. The PlugIn is then 
+	 * unloaded entirely from the wrapper, until it is restarted.
+	 * 
+	 * @param method_name The name of the methods to invoke.
+	 * @param arg_types Class<?> array containing the types of the arguments passed to the method.
+	 * @param args Object array containing the arguments to pass to the method.
+	 * @return Future array containing all the tasks created to run the methods.
+	 */
+	public static LinkedList<Future<?>> applyMethod(String method_name, Class<?>[] arg_types, Object[] args){
+		PlugIn_Call call = getCall(method_name, arg_types, args);
+		
+		
+		return applyMethod(registry.nodes.keySet(), method_name, call);
+	}
+	
+	
+	/**
+	 * Applies the method to the PlugIn in the given jar file only. Otherwise, this is the same as 
+	 * {@link #applyMethod(String, Class[], Object[])}.
+	 * 
+	 * @param jar String object containing the jar file of the PlugIn. Relative to the PlugIn directory, unless 
+	 * it's absolute.
+	 * @param method_name The name of the methods to invoke.
+	 * @param arg_types Class<?> array containing the types of the arguments passed to the method.
+	 * @param args Object array containing the arguments to pass to the method.
+	 * @return Future array containing the task created to run the method. Empty if the PlugIn isn't loaded.
+	 */
+	public static LinkedList<Future<?>> applyMethod(String jar, String method_name, Class<?>[] arg_types,
+			Object[] args){
+		
+		return applyMethod(Collections.singletonList(getPlugInFile(jar)), method_name,
+				getCall(method_name, arg_types, args));
+	}
+	
+	
+	/**
+	 * Applies a lifecycle method to all the loaded PlugIns, in the order of their dependencies, and waits for it 
+	 * to finish. See {@link #applyPhase(String, Class[], Object[])}.
+	 * 
+	 * @param method_name The name of the methods to invoke.
+	 * @return Whether or not every PlugIn finished the method in time.
+	 */
+	public static boolean applyPhase(String method_name){
+		return applyPhase(method_name, new Class<?>[0], new Object[0]);
+	}
+	
+	
+	/**
+	 * Applies a lifecycle method to all the loaded PlugIns, in the order of their dependencies, and waits for it 
+	 * to finish.
+	 * <p>
+	 * Every PlugIn runs the method in its own mailbox, all at once, except that a PlugIn only starts after every 
+	 * PlugIn it depends on is done, see {@link PlugIn#getDependencies()}. For "onServerStop" and "onShutDown", 
+	 * it's the other way around: a PlugIn only starts after every PlugIn that depends on it is done. Circular 
+	 * dependencies are announced and ignored. Since every jar has its own class loader, a dependency can name 
+	 * more than one PlugIn, in which case all of them are waited for.
+	 * <p>
+	 * This only waits as long as the timeout of the phase, see {@link #setPhaseTimeout(String, long)}. PlugIns 
+	 * that haven't finished by then are announced, and left to finish on their own.
+	 * <p>
+	 * Throwables are handled the same way as in {@link #applyMethod(String, Class[], Object[])}.
+	 * 
+	 * @param method_name The name of the methods to invoke.
+	 * @param arg_types Class<?> array containing the types of the arguments passed to the method.
+	 * @param args Object array containing the arguments to pass to the method.
+	 * @return Whether or not every PlugIn finished the method in time.
+	 */
+	public static boolean applyPhase(String method_name, Class<?>[] arg_types, Object[] args){
+		PlugIn_Call call = getCall(method_name, arg_types, args);
+		
+		boolean reverse = method_name.equals("onServerStop") || method_name.equals("onShutDown");
+		
+		
+		Collection<PlugIn_Node> nodes = registry.nodes.values();
+		
+		//Every jar has its own class loader, so more than one PlugIn can have the same class name:
+		HashMap<String, List<PlugIn_Node>> by_class = new HashMap<>();
+		
+		for (PlugIn_Node node : nodes){
+			String name = node.instance.getClass().getName();
+			
+			List<PlugIn_Node> named = by_class.get(name);
+			
+			if (named == null){
+				named = new LinkedList<>();
+				by_class.put(name, named);
+			}
+			
+			named.add(node);
+		}
+		
+		// {{ Build the Dependency Graph:
+		
+		HashMap<PlugIn_Node, LinkedList<PlugIn_Node>> prerequisites = new HashMap<>();
+		
+		for (PlugIn_Node node : nodes){
+			prerequisites.put(node, new LinkedList<PlugIn_Node>());
+		}
+		
+		for (PlugIn_Node node : nodes){
+			for (String dependency : node.dependencies){
+				List<PlugIn_Node> named = by_class.get(dependency);
+				
+				if (named == null){
+					continue;
+				}
+				
+				
+				for (PlugIn_Node prerequisite : named){
+					if (prerequisite == node){
+						continue;
+					}
+					
+					
+					if (reverse){
+						prerequisites.get(prerequisite).add(node);
+					}
+					else{
+						prerequisites.get(node).add(prerequisite);
+					}
+				}
+			}
+		}
+		
+		// }} Build the Dependency Graph:
+		
+		
+		HashMap<PlugIn_Node, CompletableFuture<Void>> phases = new HashMap<>();
+		
+		for (PlugIn_Node node : nodes){
+			schedulePhase(node, prerequisites, phases, new HashSet<PlugIn_Node>(), method_name, call);
+		}
+		
+		
+		try{
+			CompletableFuture.allOf(phases.values().toArray(new CompletableFuture<?>[0]))
+					.get(getPhaseTimeout(method_name), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e){
+			for (PlugIn_Node node : phases.keySet()){
+				if (!phases.get(node).isDone()){
+					announce("\"" + node.file + "\" didn't finish \"" + method_name + "\" within "
+							+ getPhaseTimeout(method_name) + "ms, so it's being left behind.");
+				}
+			}
+			
+			return false;
+		}
+		catch (InterruptedException | ExecutionException e){
+			return false;	//Nothing completes them exceptionally, so this is only ever an interrupt.
+		}
+		
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Schedules the phase of the PlugIn to start once the phases of its prerequisites are done, scheduling those 
+	 * first if they aren't already.
+	 * 
+	 * @param node PlugIn_Node object containing the PlugIn.
+	 * @param prerequisites HashMap containing the PlugIns each PlugIn has to wait for.
+	 * @param phases HashMap containing the phases already scheduled.
+	 * @param visiting HashSet containing the PlugIns being scheduled further up, used to find circles.
+	 * @param method_name The name of the method being invoked.
+	 * @param call PlugIn_Call object containing the call to run on each PlugIn.
+	 * @return CompletableFuture object that's completed once the phase of the PlugIn is done.
+	 */
+	private static CompletableFuture<Void> schedulePhase(PlugIn_Node node,
+			HashMap<PlugIn_Node, LinkedList<PlugIn_Node>> prerequisites,
+			HashMap<PlugIn_Node, CompletableFuture<Void>> phases, HashSet<PlugIn_Node> visiting,
+			String method_name, PlugIn_Call call){
+		
+		CompletableFuture<Void> phase = phases.get(node);
+		
+		if (phase != null){
+			return phase;
+		}
+		
+		
+		visiting.add(node);
+		
+		LinkedList<CompletableFuture<Void>> waits = new LinkedList<>();
+		
+		for (PlugIn_Node prerequisite : prerequisites.get(node)){
+			if (visiting.contains(prerequisite)){
+				announce("\"" + node.file + "\" and \"" + prerequisite.file + "\" are in a circle of dependencies, "
+						+ "so the one between them is ignored for \"" + method_name + "\".");
+				
+				continue;
+			}
+			
+			waits.add(schedulePhase(prerequisite, prerequisites, phases, visiting, method_name, call));
+		}
+		
+		visiting.remove(node);
+		
+		
+		PlugIn_Task task = new PlugIn_Task(node, method_name, call);
+		
+		CompletableFuture.allOf(waits.toArray(new CompletableFuture<?>[0])).thenRun(new Runnable(){
+			
+			@Override
+			public void run(){
+				submit(task);
+			}
+		
+		});
+		
+		phases.put(node, task.done);
+		
+		
+		return task.done;
+	}
+	
+	
+	/**
+	 * Sets how long {@link #applyPhase(String, Class[], Object[])} waits for the given lifecycle method.
+	 * 
+	 * @param method_name The name of the method.
+	 * @param millis Long representing the timeout, in milliseconds.
+	 * @throws IllegalArgumentException When the method name is null, or the timeout is less than 1.
+	 */
+	public static void setPhaseTimeout(String method_name, long millis) throws IllegalArgumentException{
+		if (method_name == null){
+			throw new IllegalArgumentException("The given method name is null.");
+		}
+		else if (millis < 1){
+			throw new IllegalArgumentException("The given timeout is less than 1.");
+		}
+		
+		phase_timeouts.put(method_name, millis);
+	}
+	
+	
+	/**
+	 * Gets how long {@link #applyPhase(String, Class[], Object[])} waits for the given lifecycle method.
+	 * 
+	 * @param method_name The name of the method.
+	 * @return Long representing the timeout, in milliseconds. {@value #DEFAULT_PHASE_TIMEOUT} unless it was set.
+	 */
+	public static long getPhaseTimeout(String method_name){
+		Long timeout = phase_timeouts.get(method_name);
+		
+		return (timeout == null) ? DEFAULT_PHASE_TIMEOUT : timeout;
+	}
+	
+	
+	/**
+	 * Gets the call that runs the PlugIn method with the given name and arguments.
+	 * 
+	 * @param method_name The name of the method.
+	 * @param arg_types Class<?> array containing the types of the arguments passed to the method.
+	 * @param args Object array containing the arguments to pass to the method.
+	 * @return PlugIn_Call object containing the call.
+	 * @throws IllegalArgumentException When the method doesn't exist, or the arguments don't fit it.
+	 */
+	private static PlugIn_Call getCall(String method_name, Class<?>[] arg_types, Object[] args)
+			throws IllegalArgumentException{
+		
+		if (arg_types.length != args.length){
+			throw new IllegalArgumentException("The argument types and arguments array aren't the same length.");
+		}
+		
+		
+		for (int i = 0; i < args.length; ++i){
+			if (args[i] != null && !arg_types[i].isPrimitive() && !arg_types[i].isInstance(args[i])){
+				throw new IllegalArgumentException("Bad arguments.");	//GG Garrett, ya fucked up.
+			}
+		}
+		
+		
+		MethodHandle handle = getMethodHandle(method_name, arg_types);
+		
+		return new PlugIn_Call(){
+			
+			@Override
+			public void call(PlugIn instance) throws Throwable{
+				handle.invokeExact(instance, args);
+			}
+		
+		};
+	}
+	
+	
+	/**
+	 * Gets the MethodHandle of the PlugIn method with the given name and argument types. The handle takes the 
+	 * PlugIn and an Object array of the arguments, and drops whatever the method returns. Each handle is only 
+	 * looked up once, then cached.
+	 * 
+	 * @param method_name The name of the method.
+	 * @param arg_types Class<?> array containing the types of the arguments passed to the method.
+	 * @return MethodHandle object containing the handle of the method.
+	 * @throws IllegalArgumentException When the PlugIn interface has no such public method.
+	 */
+	private static MethodHandle getMethodHandle(String method_name, Class<?>[] arg_types)
+			throws IllegalArgumentException{
+		
+		String key = method_name + MethodType.methodType(void.class, arg_types).toMethodDescriptorString();
+		
+		MethodHandle handle = method_handles.get(key);
+		
+		if (handle == null){
+			try{
+				handle = MethodHandles.publicLookup().unreflect(PlugIn.class.getMethod(method_name, arg_types))
+						.asSpreader(Object[].class, arg_types.length)
+						.asType(MethodType.methodType(void.class, PlugIn.class, Object[].class));
+			}
+			catch (NoSuchMethodException | SecurityException | NullPointerException e){
+				throw new IllegalArgumentException("Method doesn't exist.");	//GG Garrett, ya fucked up.
+			}
+			catch (IllegalAccessException e){
+				throw new IllegalArgumentException("Can't access method.");	//GG Garrett, ya fucked up.
+			}
+			
+			MethodHandle previous = method_handles.putIfAbsent(key, handle);
+			
+			if (previous != null){
+				handle = previous;
+			}
+		}
+		
+		
+		return handle;
+	}
+	
+	
+	/**
+	 * Passes the output line to every loaded PlugIn that wants to interpret it, running each PlugIn's 
+	 * {@link PlugIn#interpretServerOutputLine(String, ServerOutputLine)} method.
+	 * <p>
+	 * Only the PlugIns that interpret every output line, or that listed the line's type in 
+	 * {@link PlugIn#getInterpretedTypes()}, are considered. Generic lines only go to the former. Each of those is 
+	 * then asked {@link PlugIn#isInterpreted(String, ServerOutputLine)} before the line is put in its mailbox. 
+	 * PlugIns quarantined by their {@link PlugIn_Watchdog} are skipped.
+	 * <p>
+	 * Throwables are handled the same way as in {@link #applyMethod(String, Class[], Object[])}.
+	 * 
+	 * @param tag String object containing the tag of the Runner the output line came from.
+	 * @param outputLine ServerOutputLine object containing the output line to interpret.
+	 * @return Future array containing all the tasks created to run the methods.
+	 */
+	public static LinkedList<Future<?>> interpretServerOutputLine(String tag, ServerOutputLine outputLine){
+		return applyMethod(getInterested(tag, outputLine), "interpretServerOutputLine", new PlugIn_Call(){
+			
+			@Override
+			public void call(PlugIn instance){
+				instance.interpretServerOutputLine(tag, outputLine);
+			}
+		
+		}, true, isGeneric(outputLine));
+	}
+	
+	
+	/**
+	 * Passes the batch of output lines to the loaded PlugIns, running each PlugIn's 
+	 * {@link PlugIn#interpretServerOutputLines(String, List)} method once, with only the lines of the batch it 
+	 * wants. PlugIns that don't want any of the lines aren't run at all.
+	 * <p>
+	 * Which PlugIns want which lines is decided the same way as in 
+	 * {@link #interpretServerOutputLine(String, ServerOutputLine)}, and throwables are handled the same way as in 
+	 * {@link #applyMethod(String, Class[], Object[])}.
+	 * 
+	 * @param tag String object containing the tag of the Runner the output lines came from.
+	 * @param outputLines List containing the output lines to interpret, in the order the server wrote them.
+	 * @return Future array containing all the tasks created to run the methods.
+	 */
+	public static LinkedList<Future<?>> interpretServerOutputLines(String tag, List<ServerOutputLine> outputLines){
+		LinkedHashMap<String, ArrayList<ServerOutputLine>> batches = new LinkedHashMap<>();
+		
+		for (ServerOutputLine outputLine : outputLines){
+			for (String file : getInterested(tag, outputLine)){
+				ArrayList<ServerOutputLine> batch = batches.get(file);
 				
-				String _method_name = method_name;
+				if (batch == null){
+					batch = new ArrayList<>();
+					batches.put(file, batch);
+				}
 				
+				batch.add(outputLine);
+			}
+		}
+		
+		
+		LinkedList<Future<?>> return_tasks = new LinkedList<>();
+		
+		for (String file : batches.keySet()){
+			List<ServerOutputLine> batch = Collections.unmodifiableList(batches.get(file));
+			
+			boolean generic = true;
+			
+			for (ServerOutputLine outputLine : batch){
+				generic &= isGeneric(outputLine);
+			}
+			
+			return_tasks.addAll(applyMethod(Collections.singletonList(file), "interpretServerOutputLines",
+					new PlugIn_Call(){
 				
 				@Override
-				public void run(){
-					
-					synchronized (loaded_plugins) {
-						node = loaded_plugins.get(clazz);	
-					}
-							
-					
-					if (node != null){
-						Method meth = null;
-						try{
-							meth = stored_clazz.getMethod(method_name, arg_types);
-						}
-						catch (NoSuchMethodException | SecurityException | NullPointerException e){
-							throw new IllegalArgumentException("Method doesn't exist.");//GG Garrett, ya fucked up.
-						}
-						
-						
-						try{
-							meth.invoke(node.instance, args);
-						}
-						catch (IllegalAccessException e){
-							throw new IllegalArgumentException("Can't access method.");	//GG Garrett, ya fucked up.
-						}
-						catch (IllegalArgumentException e){
-							throw new IllegalArgumentException("Bad arguments.");	//GG Garrett, ya fucked up.
-						}
-						catch (InvocationTargetException e){
-							
-							// {{ Handle Throwable in PlugIn Method:
-							
-							Throwable thrown = e.getTargetException();
-							
-							
-							// {{ Invoke "onThrowable"
-							
-							Class<?>[] param_types = new Class<?>[1];
-							param_types[0] = Throwable.class;
-							
-							new Thread(){
-								
-								@Override
-								public void run(){
-									
-									Method meth = null;
-									try{
-										meth = stored_clazz.getMethod("onThrowable", param_types);
-									}
-									catch (NoSuchMethodException | SecurityException | NullPointerException e1){
-										//This won't happen.
-									}
-									
-									Object[] params = new Object[] {thrown};
-									
-									try{
-										meth.invoke(node.instance, params);
-									}
-									catch (Throwable e1) {
-										//They fucked up twice, just ignore it.
-									}
-								}
-								
-							}.start();
-							
-							// }} Invoke "onThrowable"
-							
-							announceUnload(node.file, _method_name, thrown);
-							
-							// }} Handle Throwable in PlugIn Method:
-							
-							
-							synchronized (loaded_plugins){
-								loaded_plugins.remove(stored_clazz);	
-							}
-						}
-					}
-					
+				public void call(PlugIn instance){
+					instance.interpretServerOutputLines(tag, batch);
 				}
-				
-			};
 			
+			}, true, generic));
+		}
+		
+		
+		return return_tasks;
+	}
+	
+	
+	/**
+	 * Gets the loaded PlugIns that want to interpret the output line. See 
+	 * {@link #interpretServerOutputLine(String, ServerOutputLine)} for how they're picked.
+	 * 
+	 * @param tag String object containing the tag of the Runner the output line came from.
+	 * @param outputLine ServerOutputLine object containing the output line to interpret.
+	 * @return LinkedList containing the files of the PlugIns that want the output line.
+	 */
+	private static LinkedList<String> getInterested(String tag, ServerOutputLine outputLine){
+		LinkedList<String> interested = new LinkedList<>();
+		
+		for (PlugIn_Node node : registry.getInterpreters(outputLine.getType())){
+			if (node.watchdog.skipOutputLine()){
+				continue;
+			}
+			
+			
+			try{
+				if (node.instance.isInterpreted(tag, outputLine)){
+					interested.add(node.file);
+				}
+			}
+			catch (Throwable thrown){
+				unloadForThrowable(node, "isInterpreted", thrown);
+			}
+		}
+		
+		
+		return interested;
+	}
+	
+	
+	/**
+	 * Gets whether or not the output line is known to be generic, without classifying it.
+	 * 
+	 * @param outputLine ServerOutputLine object containing the output line.
+	 * @return Whether or not the output line was already classified as generic. Lazy lines that haven't been 
+	 * classified yet aren't.
+	 */
+	private static boolean isGeneric(ServerOutputLine outputLine){
+		return outputLine.isClassified() && outputLine.getType() == null;
+	}
+	
+	
+	/**
+	 * A call to a method of a single PlugIn, run inside of the PlugIn's mailbox.
+	 */
+	private static interface PlugIn_Call{
+		/**
+		 * Runs the method on the given PlugIn.
+		 * 
+		 * @param instance PlugIn object containing the PlugIn to run the method on.
+		 * @throws Throwable Whatever the method throws.
+		 */
+		public void call(PlugIn instance) throws Throwable;
+	}
+	
+	
+	/**
+	 * Applies the method to the given loaded PlugIns, by putting a task in each PlugIn's mailbox.
+	 * 
+	 * @param files Collection containing the files of the PlugIns to run the method in.
+	 * @param method_name The name of the method being invoked. Only used when announcing an unload.
+	 * @param call PlugIn_Call object containing the call to run on each PlugIn.
+	 * @return Future array containing all the tasks created to run the methods.
+	 */
+	private static LinkedList<Future<?>> applyMethod(Collection<String> files, String method_name,
+			PlugIn_Call call){
+		
+		return applyMethod(files, method_name, call, false, false);
+	}
+	
+	
+	/**
+	 * Applies the method to the given loaded PlugIns, by putting a task in each PlugIn's mailbox.
+	 * 
+	 * @param files Collection containing the files of the PlugIns to run the method in.
+	 * @param method_name The name of the method being invoked. Only used when announcing an unload.
+	 * @param call PlugIn_Call object containing the call to run on each PlugIn.
+	 * @param output_line Boolean representing whether or not the call passes output lines, which the mailbox 
+	 * bounds.
+	 * @param generic Boolean representing whether or not every output line the call passes is known to be 
+	 * generic.
+	 * @return Future array containing all the tasks created to run the methods.
+	 */
+	private static LinkedList<Future<?>> applyMethod(Collection<String> files, String method_name,
+			PlugIn_Call call, boolean output_line, boolean generic){
+		
+		LinkedList<Future<?>> return_tasks = new LinkedList<>();
+		
+		Map<String, PlugIn_Node> nodes = registry.nodes;
+		
+		for (String file : files){
+			PlugIn_Node node = nodes.get(file);
+			
+			if (node == null){
+				continue;
+			}
+			
+			
+			PlugIn_Task task = new PlugIn_Task(node, method_name, call);
+			task.output_line = output_line;
+			task.generic = generic;
+			
+			if (submit(task)){
+				return_tasks.add(task.future);
+			}
+		}
+		
+		
+		return return_tasks;
+	}
+	
+	
+	/**
+	 * Puts the task in its PlugIn's mailbox. If the mailbox is full of output lines, this might wait for room, 
+	 * or drop a line, see {@link PlugIn_Mailbox}.
+	 * 
+	 * @param task PlugIn_Task object containing the task.
+	 * @return Whether or not the task was put in the mailbox. False if the PlugIn was unloaded, in which case the 
+	 * task is marked as done without running.
+	 */
+	private static boolean submit(PlugIn_Task task){
+		try{
+			task.node.mailbox.execute(task.future);
+			
+			return true;
+		}
+		catch (RejectedExecutionException e){
+			task.done.complete(null);	//The PlugIn was unloaded after it was looked up.
+			
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * A single call to a method of a PlugIn, waiting in the PlugIn's mailbox. The call is timed by the PlugIn's 
+	 * {@link PlugIn_Watchdog}, but only output line calls are held to its budgets.
+	 * <p>
+	 * Calls still in the mailbox when the PlugIn is unloaded for throwing something are skipped. Calls still in 
+	 * the mailbox when the PlugIn is unloaded on purpose are run, see {@link PlugIn_Loader#unloadPlugIn(String)}.
+	 */
+	private static class PlugIn_Task implements Runnable{
+		public PlugIn_Node node;
+		public String method_name;
+		public PlugIn_Call call;
+		public boolean output_line = false;
+		public boolean generic = false;
+		public boolean urgent = false;
+		
+		public CompletableFuture<Void> done = new CompletableFuture<>();
+		public PlugIn_Future future = new PlugIn_Future(this);
+		
+		public PlugIn_Task(PlugIn_Node node, String method_name, PlugIn_Call call){
+			this.node = node;
+			this.method_name = method_name;
+			this.call = call;
+			
+			urgent = method_name.equals("onShutDown");	//Shutting down shouldn't wait for a backlog.
+		}
+		
+		
+		@Override
+		public void run(){
+			PlugIn_Node current = node;
+			
+			if (!current.loaded){
+				return;
+			}
+			
+			
+			long start = current.watchdog.callStarted(method_name, future, output_line);
+			
+			try{
+				call.call(current.instance);
+			}
+			catch (Throwable thrown){
+				if (!future.isCancelled()){	//Whatever a cancelled call throws was caused by the cancel.
+					unloadForThrowable(current, method_name, thrown);
+				}
+			}
+			finally{
+				if (current.watchdog.callFinished(method_name, start, future, output_line)){
+					announceQuarantine(current.file, method_name, "went over its soft budget of "
+							+ PlugIn_Watchdog.getSoftBudget() + "ms " + PlugIn_Watchdog.getStrikeLimit()
+							+ " times in a row");
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * The part of a PlugIn_Task that waits in the PlugIn's mailbox, telling the mailbox which calls pass output 
+	 * lines.
+	 */
+	private static class PlugIn_Future extends FutureTask<Void> implements PlugIn_Mailbox.Letter{
+		private PlugIn_Task task;
+		
+		public PlugIn_Future(PlugIn_Task task){
+			super(task, null);
+			
+			this.task = task;
+		}
+		
+		
+		@Override
+		protected void done(){
+			task.done.complete(null);	//However it ended, even if it was cancelled or dropped.
+		}
+		
+		
+		@Override
+		public boolean isOutputLine(){
+			return task.output_line;
+		}
+		
+		
+		@Override
+		public boolean isGeneric(){
+			return task.generic;
+		}
+		
+		
+		@Override
+		public boolean isUrgent(){
+			return task.urgent;
+		}
+	}
+	
+	
+	/**
+	 * Checks every loaded PlugIn for an output line call that has gone over its hard budget. Stuck calls are 
+	 * cancelled (interrupted), and their PlugIns are quarantined until the calls return.
+	 * <p>
+	 * The rest of a stuck PlugIn's mailbox waits for the stuck call, instead of moving to a new thread. A PlugIn 
+	 * that ignores the interrupt would otherwise have 2 of its calls running at once, out of order.
+	 */
+	private static void checkWatchdogs(){
+		for (PlugIn_Node node : registry.nodes.values()){
+			String method_name = node.watchdog.cancelIfStuck();
+			
+			if (method_name == null){
+				continue;
+			}
+			
+			
+			announceQuarantine(node.file, method_name, "went over its hard budget of "
+					+ PlugIn_Watchdog.getHardBudget() + "ms, so it's being interrupted. Its other calls wait for "
+					+ "that one to return, and the quarantine starts once it does");
+		}
+	}
+	
+	
+	/**
+	 * Gets the watchdogs of all the loaded PlugIns, which hold the timings of every method run in them.
+	 * 
+	 * @return HashMap containing the PlugIn_Watchdog of each loaded PlugIn, by file.
+	 */
+	public static HashMap<String, PlugIn_Watchdog> getWatchdogs(){
+		HashMap<String, PlugIn_Watchdog> watchdogs = new HashMap<>();
+		
+		for (PlugIn_Node node : registry.nodes.values()){
+			watchdogs.put(node.file, node.watchdog);
+		}
+		
+		
+		return watchdogs;
+	}
+	
+	
+	/**
+	 * Unloads the PlugIn because it threw something in a method. Its {@link PlugIn#onThrowable(Throwable)} method 
+	 * is run on a separate thread, and the unload is announced. The PlugIn's class loader is closed once that 
+	 * method is done.
+	 * 
+	 * @param node PlugIn_Node object containing the PlugIn.
+	 * @param method_name String object containing name of the method that cause this.
+	 * @param thrown Throwable object containing the throwable being thrown in the method.
+	 */
+	private static void unloadForThrowable(PlugIn_Node node, String method_name, Throwable thrown){
+		synchronized (PlugIn_Loader.class){
+			if (!node.loaded){
+				return;	//It's already being unloaded.
+			}
 			
-			created.start();
+			node.loaded = false;
 			
-			return_threads.add(created);
+			unregister(node.file, node);	//Unless it's already been replaced by a reload.
 		}
 		
 		
-		return return_threads;
+		new Thread(){
+			
+			@Override
+			public void run(){
+				try{
+					node.instance.onThrowable(thrown);
+				}
+				catch (Throwable e1) {
+					//They fucked up twice, just ignore it.
+				}
+				
+				closeLoader(node.loader);
+			}
+		
+		}.start();
+		
+		announceUnload(node.file, method_name, thrown);
+		
+		
+		node.mailbox.shutdown();	//Anything already in it sees the PlugIn is gone and does nothing.
 	}
 	
 	
@@ -564,9 +1647,30 @@ public abstract class PlugIn_Loader{
 	 * @param thrown Throwable object containing the throwable being thrown in the method.
 	 */
 	private static void announceUnload(String file, String method_name, Throwable thrown){
-		String temp_err = "\"" + file + "\" is being unloaded because inside of \"" + method_name + "\", it threw "
-				+ "a \"" + thrown.getClass().getName() + "\" with the message: \"" + thrown.getMessage() + "\".";
-		
+		announce("\"" + file + "\" is being unloaded because inside of \"" + method_name + "\", it threw "
+				+ "a \"" + thrown.getClass().getName() + "\" with the message: \"" + thrown.getMessage() + "\".");
+	}
+	
+	
+	/**
+	 * Announces that the PlugIn has been quarantined by its {@link PlugIn_Watchdog}.
+	 * 
+	 * @param file String object containing the file of the PlugIn being quarantined.
+	 * @param method_name String object containing name of the method that cause this.
+	 * @param reason String object containing what the PlugIn did to get quarantined.
+	 */
+	private static void announceQuarantine(String file, String method_name, String reason){
+		announce("\"" + file + "\" is being quarantined for " + PlugIn_Watchdog.getQuarantineTime() + "ms because "
+				+ "inside of \"" + method_name + "\", it " + reason + ".");
+	}
+	
+	
+	/**
+	 * Prints the given text to the error stream, between two lines of dashes.
+	 * 
+	 * @param temp_err String object containing the text to announce.
+	 */
+	private static void announce(String temp_err){
 		String error_text = "";
 		
 		for (int i = 0; i < temp_err.length(); ++i){
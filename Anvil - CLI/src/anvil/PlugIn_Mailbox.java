@@ -0,0 +1,620 @@
+package anvil;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import anvil.api.Internal.OverflowPolicy;
+
+
+/**
+ * Represents the queue behind a PlugIn's mailbox, holding the calls waiting for the PlugIn's thread.
+ * <p>
+ * Calls that pass output lines to the PlugIn are kept apart from every other call, and only they are bounded. 
+ * Once the mailbox holds its capacity's worth of them, the {@link OverflowPolicy} decides what happens to the 
+ * next one, the same way as in a Runner's output queue, so one slow PlugIn can't use up all of the wrapper's 
+ * memory.
+ * <p>
+ * Both lanes are still taken in the order the calls were put in, so a PlugIn sees its output lines and its 
+ * lifecycle methods in the order they happened. The only calls that skip ahead of the waiting output lines are 
+ * urgent ones (the PlugIn's {@link anvil.api.PlugIn#onShutDown()} method), which are taken before anything else 
+ * in the mailbox, so shutting down a PlugIn never waits behind its backlog.
+ * <p>
+ * Dropped calls are cancelled, so whoever waits on them isn't left waiting. The calls can't be written to disk, 
+ * so {@link OverflowPolicy#SPILL_TO_DISK} can't be used. The limits are shared by all PlugIns, and are set with 
+ * the static setter.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see PlugIn_Loader
+ */
+public class PlugIn_Mailbox extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>{
+	/**
+	 * The default number of output line calls each mailbox holds.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	/**
+	 * The default OverflowPolicy of each mailbox.
+	 */
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_GENERIC;
+	
+	
+	private static volatile int default_capacity = DEFAULT_CAPACITY;
+	private static volatile OverflowPolicy default_policy = DEFAULT_OVERFLOW_POLICY;
+	
+	
+	private final int capacity;
+	private final OverflowPolicy policy;
+	
+	private ArrayDeque<Entry> calls = new ArrayDeque<>();
+	private ArrayDeque<Entry> lines = new ArrayDeque<>();
+	private ArrayDeque<Entry> generics = new ArrayDeque<>();
+	private int held = 0;
+	private int tombstones = 0;
+	private ArrayDeque<Entry> urgents = new ArrayDeque<>();
+	private long sequence = 0;
+	
+	
+	/**
+	 * Constructs a PlugIn_Mailbox object with the limits currently set.
+	 */
+	PlugIn_Mailbox(){
+		capacity = default_capacity;
+		policy = default_policy;
+	}
+	
+	
+	// {{ Limits:
+	
+	/**
+	 * Sets the capacity and OverflowPolicy of the mailboxes of the PlugIns loaded from now on. PlugIns that are 
+	 * already loaded keep the limits they were loaded with. The default is {@value #DEFAULT_CAPACITY} output line 
+	 * calls, dropping generic lines first.
+	 * 
+	 * @param capacity Integer representing the maximum number of output line calls to hold.
+	 * @param policy The OverflowPolicy enumeration that decides what happens to calls that don't fit.
+	 * @throws IllegalArgumentException When the capacity is less than 1, the policy is null, or the policy is 
+	 * {@link OverflowPolicy#SPILL_TO_DISK}.
+	 */
+	public static void setLimits(int capacity, OverflowPolicy policy) throws IllegalArgumentException{
+		if (capacity < 1){
+			throw new IllegalArgumentException("The given capacity is less than 1.");
+		}
+		else if (policy == null){
+			throw new IllegalArgumentException("The given OverflowPolicy is null.");
+		}
+		else if (policy == OverflowPolicy.SPILL_TO_DISK){
+			throw new IllegalArgumentException("The given OverflowPolicy can't be used by a mailbox.");
+		}
+		
+		default_capacity = capacity;
+		default_policy = policy;
+	}
+	
+	
+	/**
+	 * Gets the capacity given to the mailboxes of the PlugIns loaded from now on.
+	 * 
+	 * @return Integer representing the maximum number of output line calls each mailbox holds.
+	 */
+	public static int getCapacity(){
+		return default_capacity;
+	}
+	
+	
+	/**
+	 * Gets the OverflowPolicy given to the mailboxes of the PlugIns loaded from now on.
+	 * 
+	 * @return The OverflowPolicy enumeration that decides what happens to calls that don't fit.
+	 */
+	public static OverflowPolicy getOverflowPolicy(){
+		return default_policy;
+	}
+	
+	// }} Limits:
+	
+	
+	// {{ Queue:
+	
+	/**
+	 * Puts a call at the end of its lane. Output line calls that don't fit are handled by the OverflowPolicy, so 
+	 * this never refuses a call. When blocking, the thread waits for room, and drops the call if it's interrupted.
+	 * 
+	 * @param call Runnable object containing the call.
+	 * @return Always true.
+	 */
+	@Override
+	public boolean offer(Runnable call){
+		if (call == null){
+			throw new NullPointerException();
+		}
+		
+		
+		Letter dropped = null;
+		
+		synchronized (this){
+			if (!(call instanceof Letter) || !((Letter) call).isOutputLine()){
+				Entry entry = new Entry(call, false, (call instanceof Letter) && ((Letter) call).isUrgent());
+				entry.sequence = sequence++;
+				
+				if (entry.urgent){
+					urgents.addLast(entry);
+				}
+				else{
+					calls.addLast(entry);
+				}
+				
+				notifyAll();
+				
+				return true;
+			}
+			
+			
+			Letter letter = (Letter) call;
+			
+			while (dropped == null && held >= capacity){
+				if (policy == OverflowPolicy.BLOCK){
+					try{
+						wait();
+					}
+					catch (InterruptedException e){
+						Thread.currentThread().interrupt();
+						
+						dropped = letter;
+					}
+				}
+				else if (policy == OverflowPolicy.DROP_GENERIC){
+					dropped = removeOldestGeneric();
+					
+					if (dropped == null){
+						dropped = letter.isGeneric() ? letter : takeFirst();
+					}
+				}
+				else{
+					dropped = takeFirst();
+				}
+			}
+			
+			
+			if (dropped != letter){
+				add(letter);
+				
+				notifyAll();
+			}
+		}
+		
+		
+		if (dropped != null){
+			dropped.cancel(false);	//Outside the lock, since whoever waits on it runs now.
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Same as {@link #offer(Runnable)}, which already waits when it has to.
+	 */
+	@Override
+	public void put(Runnable call){
+		offer(call);
+	}
+	
+	
+	/**
+	 * Same as {@link #offer(Runnable)}, which never refuses a call.
+	 */
+	@Override
+	public boolean offer(Runnable call, long timeout, TimeUnit unit){
+		return offer(call);
+	}
+	
+	
+	@Override
+	public synchronized Runnable poll(){
+		return next();
+	}
+	
+	
+	@Override
+	public synchronized Runnable take() throws InterruptedException{
+		Runnable call;
+		while ((call = next()) == null){
+			wait();
+		}
+		
+		return call;
+	}
+	
+	
+	@Override
+	public synchronized Runnable poll(long timeout, TimeUnit unit) throws InterruptedException{
+		long remaining = unit.toNanos(timeout);
+		
+		Runnable call;
+		while ((call = next()) == null){
+			if (remaining <= 0){
+				return null;
+			}
+			
+			long start = System.nanoTime();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			remaining -= System.nanoTime() - start;
+		}
+		
+		return call;
+	}
+	
+	
+	@Override
+	public synchronized Runnable peek(){
+		Entry entry = peekNext();
+		
+		return (entry == null) ? null : entry.call;
+	}
+	
+	
+	@Override
+	public synchronized boolean remove(Object call){
+		if (removeFrom(urgents, call) || removeFrom(calls, call)){
+			return true;
+		}
+		
+		
+		for (Entry entry : lines){
+			if (!entry.dropped && entry.call == call){
+				drop(entry);
+				
+				if (entry.generic){
+					generics.remove(entry);
+				}
+				
+				notifyAll();
+				
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	@Override
+	public int drainTo(Collection<? super Runnable> drained){
+		return drainTo(drained, Integer.MAX_VALUE);
+	}
+	
+	
+	@Override
+	public synchronized int drainTo(Collection<? super Runnable> drained, int max){
+		int taken = 0;
+		
+		Runnable call;
+		while (taken < max && (call = next()) != null){
+			drained.add(call);
+			++taken;
+		}
+		
+		return taken;
+	}
+	
+	
+	/**
+	 * Gets the room left in the mailbox, which is always plenty, since the mailbox never refuses a call.
+	 * 
+	 * @return Integer.MAX_VALUE.
+	 */
+	@Override
+	public int remainingCapacity(){
+		return Integer.MAX_VALUE;
+	}
+	
+	
+	@Override
+	public synchronized int size(){
+		return urgents.size() + calls.size() + held;
+	}
+	
+	
+	/**
+	 * Gets an iterator over the calls in the mailbox at the time of calling, lane by lane. The iterator can't 
+	 * remove calls.
+	 * 
+	 * @return Iterator object over the calls.
+	 */
+	@Override
+	public synchronized Iterator<Runnable> iterator(){
+		ArrayList<Runnable> snapshot = new ArrayList<>();
+		
+		for (Entry entry : urgents){
+			snapshot.add(entry.call);
+		}
+		
+		for (Entry entry : calls){
+			snapshot.add(entry.call);
+		}
+		
+		for (Entry entry : lines){
+			if (!entry.dropped){
+				snapshot.add(entry.call);
+			}
+		}
+		
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+	
+	
+	/**
+	 * Drops every output line call waiting in the mailbox, leaving the other calls. Used when a PlugIn is 
+	 * unloaded, so it doesn't get lines after its {@link anvil.api.PlugIn#onShutDown()} method.
+	 */
+	void dropOutputLines(){
+		ArrayList<Letter> dropped = new ArrayList<>();
+		
+		synchronized (this){
+			Entry entry;
+			while ((entry = lines.pollFirst()) != null){
+				if (!entry.dropped){
+					dropped.add((Letter) entry.call);
+				}
+			}
+			
+			generics.clear();
+			held = 0;
+			tombstones = 0;
+			
+			notifyAll();
+		}
+		
+		
+		for (Letter letter : dropped){
+			letter.cancel(false);
+		}
+	}
+	
+	// }} Queue:
+	
+	
+	/**
+	 * Gets the entry of the next call to take: an urgent call if there is one, otherwise whichever lane's first 
+	 * call was put in first.
+	 * 
+	 * @return Entry object containing the call. Null if the mailbox is empty.
+	 */
+	private Entry peekNext(){
+		if (!urgents.isEmpty()){
+			return urgents.peekFirst();
+		}
+		
+		
+		Entry line = lines.peekFirst();
+		
+		while (line != null && line.dropped){
+			lines.pollFirst();
+			--tombstones;
+			
+			line = lines.peekFirst();
+		}
+		
+		
+		Entry call = calls.peekFirst();
+		
+		if (call != null && (line == null || call.sequence < line.sequence)){
+			return call;
+		}
+		
+		return line;
+	}
+	
+	
+	/**
+	 * Takes the next call, in the order they were put in, see {@link #peekNext()}. Whoever is waiting for room is 
+	 * woken up.
+	 * 
+	 * @return Runnable object containing the call. Null if the mailbox is empty.
+	 */
+	private Runnable next(){
+		Entry entry = peekNext();
+		
+		if (entry == null){
+			return null;
+		}
+		
+		
+		if (!entry.line){
+			if (entry.urgent){
+				urgents.pollFirst();
+			}
+			else{
+				calls.pollFirst();
+			}
+			
+			return entry.call;
+		}
+		
+		
+		takeFirst();
+		
+		notifyAll();	//A blocked submitter has room now.
+		
+		return entry.call;
+	}
+	
+	
+	/**
+	 * Removes the call from a lane that isn't the output lines'.
+	 * 
+	 * @param lane ArrayDeque containing the lane.
+	 * @param call Object containing the call.
+	 * @return Whether or not the call was in the lane.
+	 */
+	private static boolean removeFrom(ArrayDeque<Entry> lane, Object call){
+		Iterator<Entry> iterator = lane.iterator();
+		while (iterator.hasNext()){
+			if (iterator.next().call == call){
+				iterator.remove();
+				
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Adds an output line call to the end of its lane.
+	 * 
+	 * @param letter Letter object containing the call.
+	 */
+	private void add(Letter letter){
+		Entry entry = new Entry(letter, letter.isGeneric(), false);
+		entry.line = true;
+		entry.sequence = sequence++;
+		
+		lines.addLast(entry);
+		
+		if (entry.generic){
+			generics.addLast(entry);
+		}
+		
+		++held;
+	}
+	
+	
+	/**
+	 * Takes the output line call at the front of its lane, skipping dropped ones.
+	 * 
+	 * @return Letter object containing the call. Null if there are none.
+	 */
+	private Letter takeFirst(){
+		Entry entry;
+		while ((entry = lines.pollFirst()) != null){
+			if (entry.dropped){
+				--tombstones;
+				
+				continue;
+			}
+			
+			
+			if (entry.generic){
+				generics.pollFirst();	//The oldest generic call is always the oldest call that's generic.
+			}
+			
+			--held;
+			
+			return (Letter) entry.call;
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Drops the oldest generic output line call, if there is one.
+	 * 
+	 * @return Letter object containing the dropped call. Null if there are no generic calls.
+	 */
+	private Letter removeOldestGeneric(){
+		Entry entry = generics.pollFirst();
+		
+		if (entry == null){
+			return null;
+		}
+		
+		
+		drop(entry);
+		
+		return (Letter) entry.call;
+	}
+	
+	
+	/**
+	 * Marks the entry as dropped, leaving it in the lane until it comes out, unless there are more dropped entries 
+	 * than live ones.
+	 * 
+	 * @param entry Entry object containing the call to drop.
+	 */
+	private void drop(Entry entry){
+		entry.dropped = true;
+		
+		--held;
+		++tombstones;
+		
+		if (tombstones > held){
+			Iterator<Entry> iterator = lines.iterator();
+			while (iterator.hasNext()){
+				if (iterator.next().dropped){
+					iterator.remove();
+				}
+			}
+			
+			tombstones = 0;
+		}
+	}
+	
+	
+	/**
+	 * A call in the mailbox that the mailbox needs to know more about. Calls that aren't Letters are never 
+	 * output line calls.
+	 */
+	static interface Letter extends RunnableFuture<Void>{
+		/**
+		 * Gets whether or not the call passes output lines to the PlugIn.
+		 * 
+		 * @return Whether or not the call is bounded by the mailbox's capacity.
+		 */
+		public boolean isOutputLine();
+		
+		
+		/**
+		 * Gets whether or not every output line the call passes is known to be generic.
+		 * 
+		 * @return Whether or not the call is dropped first by {@link OverflowPolicy#DROP_GENERIC}.
+		 */
+		public boolean isGeneric();
+		
+		
+		/**
+		 * Gets whether or not the call skips ahead of the output lines waiting in the mailbox.
+		 * 
+		 * @return Whether or not the call is urgent. Never true for output line calls.
+		 */
+		public boolean isUrgent();
+	}
+	
+	
+	/**
+	 * A call in the mailbox, where it is in the order the calls were put in, and whether or not it's been dropped.
+	 */
+	private static class Entry{
+		final Runnable call;
+		final boolean generic;
+		final boolean urgent;
+		boolean line = false;
+		long sequence;
+		boolean dropped = false;
+		
+		
+		/**
+		 * Constructs an Entry object.
+		 * 
+		 * @param call Runnable object containing the call.
+		 * @param generic Boolean representing whether or not the call is known to be generic.
+		 * @param urgent Boolean representing whether or not the call skips ahead of the output lines.
+		 */
+		Entry(Runnable call, boolean generic, boolean urgent){
+			this.call = call;
+			this.generic = generic;
+			this.urgent = urgent;
+		}
+	}
+}
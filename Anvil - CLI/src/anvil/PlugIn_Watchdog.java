@@ -0,0 +1,517 @@
+package anvil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps time on every method Anvil runs in a single PlugIn, and decides when the PlugIn has been too slow.
+ * <p>
+ * Every call is timed, but only the calls that pass output lines to the PlugIn are checked against the budgets. 
+ * The lifecycle methods are only waited for as long as their phase's timeout, see 
+ * {@link PlugIn_Loader#setPhaseTimeout(String, long)}, and are never cancelled.
+ * <p>
+ * Output line calls are checked against two budgets. A call that goes over the soft budget is a strike. A PlugIn 
+ * that strikes out, by going over the soft budget on enough calls in a row, is quarantined: it stops getting 
+ * output lines for a while, but still gets every other method. A call that goes over the hard budget is stuck, so 
+ * it's cancelled (interrupted), and the PlugIn is quarantined right away. The PlugIn stays quarantined for as long 
+ * as the stuck call keeps running, and for the quarantine time after it returns.
+ * <p>
+ * The budgets are shared by all PlugIns, and are set with the static setters. The timings of each method are 
+ * kept separately, over the last {@value #RESERVOIR_SIZE} calls of it.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see PlugIn_Loader
+ */
+public class PlugIn_Watchdog{
+	/**
+	 * The number of calls of each method whose times are kept.
+	 */
+	public static final int RESERVOIR_SIZE = 1024;
+	
+	/**
+	 * The default soft budget, in milliseconds.
+	 */
+	public static final long DEFAULT_SOFT_BUDGET = 50;
+	
+	/**
+	 * The default hard budget, in milliseconds.
+	 */
+	public static final long DEFAULT_HARD_BUDGET = 5000;
+	
+	/**
+	 * The default number of strikes in a row that get a PlugIn quarantined.
+	 */
+	public static final int DEFAULT_STRIKE_LIMIT = 3;
+	
+	/**
+	 * The default time a PlugIn stays quarantined, in milliseconds.
+	 */
+	public static final long DEFAULT_QUARANTINE_TIME = 60000;
+	
+	
+	private static volatile long soft_budget = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SOFT_BUDGET);
+	private static volatile long hard_budget = TimeUnit.MILLISECONDS.toNanos(DEFAULT_HARD_BUDGET);
+	private static volatile int strike_limit = DEFAULT_STRIKE_LIMIT;
+	private static volatile long quarantine_time = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUARANTINE_TIME);
+	
+	
+	private String file;
+	
+	private HashMap<String, Reservoir> timings = new HashMap<>();
+	
+	private int strikes = 0;
+	private long quarantined_until;
+	private volatile boolean quarantined = false;
+	private long quarantines = 0;
+	private long skipped_lines = 0;
+	
+	private String call_method;
+	private Future<?> call_task;
+	private long call_start;
+	private Future<?> stuck_task;
+	
+	
+	/**
+	 * Constructs a PlugIn_Watchdog object for the PlugIn in the given file.
+	 * 
+	 * @param file String object containing the file of the PlugIn.
+	 */
+	PlugIn_Watchdog(String file){
+		this.file = file;
+	}
+	
+	
+	// {{ Budgets:
+	
+	/**
+	 * Sets the soft budget of every PlugIn call. A PlugIn that goes over it on too many calls in a row is 
+	 * quarantined.
+	 * 
+	 * @param millis Long representing the soft budget, in milliseconds.
+	 * @throws IllegalArgumentException When the budget is less than 1.
+	 */
+	public static void setSoftBudget(long millis) throws IllegalArgumentException{
+		if (millis < 1){
+			throw new IllegalArgumentException("The given budget is less than 1.");
+		}
+		
+		soft_budget = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+	
+	
+	/**
+	 * Gets the soft budget of every PlugIn call.
+	 * 
+	 * @return Long representing the soft budget, in milliseconds.
+	 */
+	public static long getSoftBudget(){
+		return TimeUnit.NANOSECONDS.toMillis(soft_budget);
+	}
+	
+	
+	/**
+	 * Sets the hard budget of every PlugIn call. A call that goes over it is cancelled, and its PlugIn is 
+	 * quarantined right away.
+	 * 
+	 * @param millis Long representing the hard budget, in milliseconds.
+	 * @throws IllegalArgumentException When the budget is less than 1.
+	 */
+	public static void setHardBudget(long millis) throws IllegalArgumentException{
+		if (millis < 1){
+			throw new IllegalArgumentException("The given budget is less than 1.");
+		}
+		
+		hard_budget = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+	
+	
+	/**
+	 * Gets the hard budget of every PlugIn call.
+	 * 
+	 * @return Long representing the hard budget, in milliseconds.
+	 */
+	public static long getHardBudget(){
+		return TimeUnit.NANOSECONDS.toMillis(hard_budget);
+	}
+	
+	
+	/**
+	 * Sets the number of calls in a row that have to go over the soft budget for a PlugIn to be quarantined.
+	 * 
+	 * @param strikes Integer representing the number of strikes.
+	 * @throws IllegalArgumentException When the number of strikes is less than 1.
+	 */
+	public static void setStrikeLimit(int strikes) throws IllegalArgumentException{
+		if (strikes < 1){
+			throw new IllegalArgumentException("The given number of strikes is less than 1.");
+		}
+		
+		strike_limit = strikes;
+	}
+	
+	
+	/**
+	 * Gets the number of calls in a row that have to go over the soft budget for a PlugIn to be quarantined.
+	 * 
+	 * @return Integer representing the number of strikes.
+	 */
+	public static int getStrikeLimit(){
+		return strike_limit;
+	}
+	
+	
+	/**
+	 * Sets how long a PlugIn stays quarantined.
+	 * 
+	 * @param millis Long representing the quarantine time, in milliseconds.
+	 * @throws IllegalArgumentException When the time is negative.
+	 */
+	public static void setQuarantineTime(long millis) throws IllegalArgumentException{
+		if (millis < 0){
+			throw new IllegalArgumentException("The given time is negative.");
+		}
+		
+		quarantine_time = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+	
+	
+	/**
+	 * Gets how long a PlugIn stays quarantined.
+	 * 
+	 * @return Long representing the quarantine time, in milliseconds.
+	 */
+	public static long getQuarantineTime(){
+		return TimeUnit.NANOSECONDS.toMillis(quarantine_time);
+	}
+	
+	// }} Budgets:
+	
+	
+	// {{ Calls:
+	
+	/**
+	 * Marks the start of a call in the PlugIn.
+	 * 
+	 * @param method_name String object containing the name of the method being called.
+	 * @param task Future object containing the task running the call. Cancelled if the call gets stuck.
+	 * @param budgeted Boolean representing whether or not the call is checked against the budgets.
+	 * @return Long representing when the call started, in nanoseconds.
+	 */
+	synchronized long callStarted(String method_name, Future<?> task, boolean budgeted){
+		long start = System.nanoTime();
+		
+		if (budgeted){
+			call_method = method_name;
+			call_start = start;
+			call_task = task;
+		}
+		
+		return start;
+	}
+	
+	
+	/**
+	 * Marks the end of a call in the PlugIn, keeping its time and checking it against the soft budget if it's 
+	 * budgeted.
+	 * 
+	 * @param method_name String object containing the name of the method that was called.
+	 * @param start Long representing when the call started, in nanoseconds.
+	 * @param task Future object containing the task that ran the call.
+	 * @param budgeted Boolean representing whether or not the call is checked against the budgets.
+	 * @return Whether or not the PlugIn struck out on this call, and was quarantined because of it.
+	 */
+	boolean callFinished(String method_name, long start, Future<?> task, boolean budgeted){
+		long time = System.nanoTime() - start;
+		
+		synchronized (this){
+			if (call_task == task){
+				call_task = null;	//Not if it was cancelled, and another call has started since.
+				call_method = null;
+			}
+			
+			
+			Reservoir reservoir = timings.get(method_name);
+			
+			if (reservoir == null){
+				reservoir = new Reservoir();
+				timings.put(method_name, reservoir);
+			}
+			
+			reservoir.add(time);
+			
+			if (!budgeted){
+				return false;
+			}
+			
+			
+			if (stuck_task == task){
+				stuck_task = null;
+				
+				quarantined_until = System.nanoTime() + quarantine_time;	//Only starts counting down now.
+				
+				return false;
+			}
+			
+			if (time <= soft_budget){
+				strikes = 0;
+				
+				return false;
+			}
+			
+			if (++strikes < strike_limit){
+				return false;
+			}
+			
+			
+			quarantine();
+			
+			return true;
+		}
+	}
+	
+	
+	/**
+	 * Checks the call in the PlugIn against the hard budget. If it's gone over, the call is cancelled and the 
+	 * PlugIn is quarantined until the call returns.
+	 * 
+	 * @return The name of the method that got stuck. Null if the PlugIn isn't stuck.
+	 */
+	String cancelIfStuck(){
+		Future<?> task = null;
+		String method_name = null;
+		
+		synchronized (this){
+			if (call_task == null || System.nanoTime() - call_start <= hard_budget){
+				return null;
+			}
+			
+			task = call_task;
+			method_name = call_method;
+			
+			call_task = null;
+			call_method = null;
+			
+			stuck_task = task;
+			
+			quarantine();
+		}
+		
+		task.cancel(true);
+		
+		return method_name;
+	}
+	
+	
+	/**
+	 * Quarantines the PlugIn, starting now.
+	 */
+	private synchronized void quarantine(){
+		strikes = 0;
+		++quarantines;
+		
+		quarantined_until = System.nanoTime() + quarantine_time;
+		quarantined = true;
+	}
+	
+	
+	/**
+	 * Checks if the PlugIn is quarantined, and counts the output line it's skipping if it is. Quarantines end by 
+	 * themselves once their time is up, unless a stuck call still hasn't returned.
+	 * 
+	 * @return Whether or not the PlugIn is quarantined.
+	 */
+	boolean skipOutputLine(){
+		if (!quarantined){
+			return false;
+		}
+		
+		
+		synchronized (this){
+			if (quarantined && stuck_task == null && System.nanoTime() - quarantined_until >= 0){
+				quarantined = false;
+				
+				return false;
+			}
+			
+			++skipped_lines;
+			
+			return quarantined;
+		}
+	}
+	
+	// }} Calls:
+	
+	
+	// {{ Getters:
+	
+	/**
+	 * Gets the file of the PlugIn being watched.
+	 * 
+	 * @return String object containing the file of the PlugIn.
+	 */
+	public String getFile(){
+		return file;
+	}
+	
+	
+	/**
+	 * Gets whether or not the PlugIn is quarantined right now.
+	 * 
+	 * @return Whether or not the PlugIn is quarantined.
+	 */
+	public synchronized boolean isQuarantined(){
+		return quarantined && (stuck_task != null || System.nanoTime() - quarantined_until < 0);
+	}
+	
+	
+	/**
+	 * Gets the number of times the PlugIn has been quarantined.
+	 * 
+	 * @return Long representing the number of quarantines.
+	 */
+	public synchronized long getQuarantineCount(){
+		return quarantines;
+	}
+	
+	
+	/**
+	 * Gets the number of output lines the PlugIn has skipped while quarantined.
+	 * 
+	 * @return Long representing the number of skipped output lines.
+	 */
+	public synchronized long getSkippedOutputLines(){
+		return skipped_lines;
+	}
+	
+	
+	/**
+	 * Gets the timings of every method that has been called in the PlugIn.
+	 * 
+	 * @return HashMap containing the Timings of each method, by name.
+	 */
+	public synchronized HashMap<String, Timings> getTimings(){
+		HashMap<String, Timings> return_timings = new HashMap<>(timings.size());
+		
+		for (String method_name : timings.keySet()){
+			return_timings.put(method_name, timings.get(method_name).getTimings());
+		}
+		
+		
+		return return_timings;
+	}
+	
+	// }} Getters:
+	
+	
+	/**
+	 * Keeps the times of the last {@value PlugIn_Watchdog#RESERVOIR_SIZE} calls of a method, and the slowest one 
+	 * ever.
+	 */
+	private static class Reservoir{
+		private long[] samples = new long[RESERVOIR_SIZE];
+		private long count = 0;
+		private long max = 0;
+		
+		
+		public void add(long time){
+			samples[(int) (count++ % RESERVOIR_SIZE)] = time;
+			
+			max = Math.max(max, time);
+		}
+		
+		
+		public Timings getTimings(){
+			long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, RESERVOIR_SIZE));
+			Arrays.sort(sorted);
+			
+			return new Timings(count, percentile(sorted, 50), percentile(sorted, 99), max);
+		}
+		
+		
+		private static long percentile(long[] sorted, int percent){
+			if (sorted.length == 0){
+				return 0;
+			}
+			
+			return sorted[(int) Math.ceil(sorted.length * percent / 100.0) - 1];
+		}
+	}
+	
+	
+	/**
+	 * Represents the timings of a single method of a PlugIn. All times are in nanoseconds.
+	 * <p>
+	 * The percentiles only cover the last {@value PlugIn_Watchdog#RESERVOIR_SIZE} calls of the method, but the 
+	 * count and the max cover every call.
+	 * 
+	 * @author Garrett Stonis
+	 * @version 1.0
+	 * 
+	 * @see PlugIn_Watchdog
+	 */
+	public static class Timings{
+		private long count;
+		private long p50;
+		private long p99;
+		private long max;
+		
+		
+		private Timings(long count, long p50, long p99, long max){
+			this.count = count;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.max = max;
+		}
+		
+		
+		/**
+		 * Gets the number of times the method has been called.
+		 * 
+		 * @return Long representing the number of calls.
+		 */
+		public long getCount(){
+			return count;
+		}
+		
+		
+		/**
+		 * Gets the median time of the method.
+		 * 
+		 * @return Long representing the 50th percentile, in nanoseconds.
+		 */
+		public long getP50(){
+			return p50;
+		}
+		
+		
+		/**
+		 * Gets the time that 99% of the calls of the method finished in.
+		 * 
+		 * @return Long representing the 99th percentile, in nanoseconds.
+		 */
+		public long getP99(){
+			return p99;
+		}
+		
+		
+		/**
+		 * Gets the slowest time of the method.
+		 * 
+		 * @return Long representing the slowest time, in nanoseconds.
+		 */
+		public long getMax(){
+			return max;
+		}
+		
+		
+		@Override
+		public String toString(){
+			return "count=" + count + ", p50=" + p50 + "ns, p99=" + p99 + "ns, max=" + max + "ns";
+		}
+	}
+}
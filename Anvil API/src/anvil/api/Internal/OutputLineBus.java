@@ -0,0 +1,184 @@
+package anvil.api.Internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import anvil.api.ServerOutputLine.ServerOutputLine;
+
+
+/**
+ * Represents a broadcast of a Runner's output lines to any number of subscribers.
+ * <p>
+ * The bus is a ring of slots. Every line is published into the next slot, overwriting whatever line was there a 
+ * full ring ago, and every {@link OutputSubscription} reads the slots behind its own cursor. Nothing is ever 
+ * taken out of the ring, so every subscriber sees every line, and a subscriber that falls behind only hurts 
+ * itself: once the ring laps it, it skips ahead and counts the lines it missed. The publisher never waits on a 
+ * subscriber.
+ * <p>
+ * There must only ever be 1 thread publishing at a time.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see OutputSubscription
+ * @see Runner#subscribeToOutput()
+ */
+class OutputLineBus{
+	static final int DEFAULT_CAPACITY = 4096;
+	
+	
+	private AtomicReferenceArray<Entry> slots;
+	private int mask;
+	
+	private volatile long published = -1;
+	private AtomicInteger waiting = new AtomicInteger();
+	
+	
+	/**
+	 * Constructs an OutputLineBus object with the given number of slots.
+	 * 
+	 * @param capacity Integer representing the number of slots in the ring. Rounded up to a power of 2.
+	 * @throws IllegalArgumentException When the capacity is less than 1.
+	 */
+	OutputLineBus(int capacity) throws IllegalArgumentException{
+		if (capacity < 1){
+			throw new IllegalArgumentException("The given capacity is less than 1.");
+		}
+		
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity){
+			size <<= 1;
+		}
+		
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+	
+	
+	/**
+	 * Publishes a line to every subscriber. Never waits on any of them.
+	 * 
+	 * @param line ServerOutputLine object containing the line to publish.
+	 */
+	void publish(ServerOutputLine line){
+		long sequence = published + 1;
+		
+		slots.set((int) (sequence & mask), new Entry(sequence, line));
+		published = sequence;
+		
+		
+		if (waiting.get() > 0){
+			synchronized (this){
+				notifyAll();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Makes a new subscription that starts with the next line published.
+	 * 
+	 * @return OutputSubscription object containing the new subscription.
+	 */
+	OutputSubscription subscribe(){
+		return new OutputSubscription(this, published + 1);
+	}
+	
+	
+	/**
+	 * Gets the sequence of the last line published.
+	 * 
+	 * @return Long representing the sequence of the last line published. -1 if none.
+	 */
+	long getPublished(){
+		return published;
+	}
+	
+	
+	/**
+	 * Gets the number of slots in the ring.
+	 * 
+	 * @return Integer representing the number of slots in the ring.
+	 */
+	int getCapacity(){
+		return mask + 1;
+	}
+	
+	
+	/**
+	 * Gets the entry in the slot the given sequence would be in. The entry might be for a later sequence, if the 
+	 * ring has already lapped it.
+	 * 
+	 * @param sequence Long representing the sequence to look for.
+	 * @return Entry object containing whatever is in the slot. Null if nothing has been published there yet.
+	 */
+	Entry get(long sequence){
+		return slots.get((int) (sequence & mask));
+	}
+	
+	
+	/**
+	 * Waits for the line with the given sequence to be published.
+	 * 
+	 * @param sequence Long representing the sequence to wait for.
+	 * @param timeout Long representing the longest to wait, in nanoseconds.
+	 * @param subscription OutputSubscription object that's waiting. Stops waiting once it's closed.
+	 * @return Whether or not the line was published in time.
+	 * @throws InterruptedException When the thread is interrupted while waiting.
+	 */
+	boolean await(long sequence, long timeout, OutputSubscription subscription) throws InterruptedException{
+		waiting.incrementAndGet();
+		
+		try{
+			synchronized (this){
+				long remaining = timeout;
+				
+				while (published < sequence && !subscription.isClosed()){
+					if (remaining <= 0){
+						return false;
+					}
+					
+					long start = System.nanoTime();
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					remaining -= System.nanoTime() - start;
+				}
+				
+				return published >= sequence;
+			}
+		}
+		finally{
+			waiting.decrementAndGet();
+		}
+	}
+	
+	
+	/**
+	 * Wakes up every subscriber that's waiting, so closed subscriptions can stop.
+	 */
+	synchronized void wakeAll(){
+		notifyAll();
+	}
+	
+	
+	/**
+	 * Represents a published line and its sequence. Slots are only ever replaced as a whole, so a subscriber 
+	 * always sees a line together with its own sequence.
+	 */
+	static class Entry{
+		final long sequence;
+		final ServerOutputLine line;
+		
+		
+		/**
+		 * Constructs an Entry object.
+		 * 
+		 * @param sequence Long representing where the line was in the server's output.
+		 * @param line ServerOutputLine object containing the published line.
+		 */
+		Entry(long sequence, ServerOutputLine line){
+			this.sequence = sequence;
+			this.line = line;
+		}
+	}
+}
@@ -0,0 +1,455 @@
+package anvil.api.Internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import anvil.api.ServerOutputLine.ServerOutputLine;
+
+
+/**
+ * Represents the queue of output lines between a Runner's reader and whoever takes lines out of it.
+ * <p>
+ * The queue holds at most its capacity of lines in memory. What happens to a line that doesn't fit is decided by 
+ * the queue's {@link OverflowPolicy}. When spilling to disk, every line that comes after the first spilled line 
+ * is spilled too, until the spill file is read back empty, so lines always come out in the order they went in.
+ * <p>
+ * Whether or not a line is generic is only decided once, when it's put in the queue, and only for lines that 
+ * are already classified, so the queue never classifies a line itself. The generic lines are also kept in a 
+ * second queue of their own, so the oldest one can be dropped without searching for it. A dropped line is only 
+ * marked as dropped, and skipped when it comes out.
+ * <p>
+ * The queue keeps track of its depth, the deepest it has ever been (its high-water mark), and how many lines it 
+ * has dropped.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see Runner
+ * @see OverflowPolicy
+ */
+class OutputLineQueue{
+	private int capacity;
+	private OverflowPolicy policy;
+	
+	private ArrayDeque<Entry> lines = new ArrayDeque<>();
+	private ArrayDeque<Entry> generics = new ArrayDeque<>();
+	private int held = 0;
+	private int tombstones = 0;
+	
+	private String tag;
+	private File spill_file;
+	private DataOutputStream spill_out;
+	private DataInputStream spill_in;
+	private long spilled = 0;
+	
+	private long highWaterMark = 0;
+	private long dropped = 0;
+	
+	
+	/**
+	 * Constructs an OutputLineQueue object with the given capacity and overflow policy.
+	 * 
+	 * @param capacity Integer representing the maximum number of lines to hold in memory.
+	 * @param policy The OverflowPolicy enumeration that decides what happens to lines that don't fit.
+	 * @param tag String object containing the tag of the Runner using the queue. Used to name the spill file.
+	 * @throws IllegalArgumentException When the capacity is less than 1, or the policy is null.
+	 */
+	OutputLineQueue(int capacity, OverflowPolicy policy, String tag) throws IllegalArgumentException{
+		setLimits(capacity, policy);
+		
+		this.tag = tag;
+	}
+	
+	
+	/**
+	 * Sets the capacity and overflow policy of the queue. Lines already in the queue are kept, even if there are 
+	 * more of them than the new capacity.
+	 * 
+	 * @param capacity Integer representing the maximum number of lines to hold in memory.
+	 * @param policy The OverflowPolicy enumeration that decides what happens to lines that don't fit.
+	 * @throws IllegalArgumentException When the capacity is less than 1, or the policy is null.
+	 */
+	synchronized void setLimits(int capacity, OverflowPolicy policy) throws IllegalArgumentException{
+		if (capacity < 1){
+			throw new IllegalArgumentException("The given capacity is less than 1.");
+		}
+		else if (policy == null){
+			throw new IllegalArgumentException("The given OverflowPolicy is null.");
+		}
+		
+		this.capacity = capacity;
+		this.policy = policy;
+		
+		notifyAll();	//A blocked reader might have room now.
+	}
+	
+	
+	/**
+	 * Puts a line at the end of the queue. If the queue is full, the overflow policy decides what happens.
+	 * 
+	 * @param line ServerOutputLine object containing the line to put.
+	 * @throws InterruptedException When the thread is interrupted while waiting for room.
+	 */
+	synchronized void put(ServerOutputLine line) throws InterruptedException{
+		boolean generic = line.isClassified() && line.getType() == null;
+		
+		while (spilled == 0 && held >= capacity){
+			if (policy == OverflowPolicy.BLOCK){
+				wait();
+			}
+			else if (policy == OverflowPolicy.DROP_GENERIC){
+				++dropped;
+				
+				if (!removeOldestGeneric()){
+					if (generic){
+						return;
+					}
+					
+					takeFirst();
+				}
+			}
+			else if (policy == OverflowPolicy.DROP_OLDEST){
+				++dropped;
+				
+				takeFirst();
+			}
+			else{
+				break;	//Spill to disk.
+			}
+		}
+		
+		
+		if (spilled > 0 || held >= capacity){
+			spill(line);
+		}
+		else{
+			add(line, generic);
+		}
+		
+		highWaterMark = Math.max(highWaterMark, size());
+		
+		notifyAll();
+	}
+	
+	
+	/**
+	 * Takes the line at the front of the queue, waiting up to the given time for one to show up.
+	 * 
+	 * @param timeout Long representing how long to wait, in the given unit.
+	 * @param unit TimeUnit enumeration representing the unit of the timeout.
+	 * @return ServerOutputLine object containing the line at the front of the queue. Null if the time ran out.
+	 * @throws InterruptedException When the thread is interrupted while waiting.
+	 */
+	synchronized ServerOutputLine poll(long timeout, TimeUnit unit) throws InterruptedException{
+		long remaining = unit.toNanos(timeout);
+		
+		while (held == 0 && spilled == 0){
+			if (remaining <= 0){
+				return null;
+			}
+			
+			long start = System.nanoTime();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			remaining -= System.nanoTime() - start;
+		}
+		
+		
+		if (held == 0){
+			readSpill();
+		}
+		
+		ServerOutputLine line = takeFirst();
+		
+		notifyAll();	//A blocked reader has room now.
+		
+		return line;
+	}
+	
+	
+	/**
+	 * Takes a batch of lines from the front of the queue. Waits as long as it takes for the first line, then 
+	 * keeps taking lines until the batch is full, or the given time has passed since the first line showed up.
+	 * 
+	 * @param batch Collection object to add the lines to.
+	 * @param max Integer representing the most lines to take.
+	 * @param linger Long representing how long to wait for more lines after the first, in the given unit.
+	 * @param unit TimeUnit enumeration representing the unit of the linger.
+	 * @return Integer representing the number of lines taken.
+	 * @throws InterruptedException When the thread is interrupted while waiting.
+	 */
+	synchronized int drainTo(Collection<? super ServerOutputLine> batch, int max, long linger, TimeUnit unit)
+			throws InterruptedException{
+		
+		while (held == 0 && spilled == 0){
+			wait();
+		}
+		
+		
+		long remaining = unit.toNanos(linger);
+		int taken = 0;
+		
+		while (taken < max){
+			if (held == 0 && spilled > 0){
+				readSpill();
+			}
+			
+			if (held != 0){
+				batch.add(takeFirst());
+				++taken;
+				
+				continue;
+			}
+			
+			
+			if (remaining <= 0){
+				break;
+			}
+			
+			notifyAll();	//A blocked reader has room now.
+			
+			long start = System.nanoTime();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			remaining -= System.nanoTime() - start;
+		}
+		
+		notifyAll();
+		
+		return taken;
+	}
+	
+	
+	/**
+	 * Gets the number of lines in the queue, including the ones spilled to disk.
+	 * 
+	 * @return Long representing the depth of the queue.
+	 */
+	synchronized long size(){
+		return held + spilled;
+	}
+	
+	
+	/**
+	 * Gets the deepest the queue has ever been, including the lines spilled to disk.
+	 * 
+	 * @return Long representing the high-water mark of the queue.
+	 */
+	synchronized long getHighWaterMark(){
+		return highWaterMark;
+	}
+	
+	
+	/**
+	 * Gets the number of lines the queue has dropped.
+	 * 
+	 * @return Long representing the number of dropped lines.
+	 */
+	synchronized long getDroppedCount(){
+		return dropped;
+	}
+	
+	
+	/**
+	 * Counts lines that were dropped before they ever made it to the queue.
+	 * 
+	 * @param count Long representing the number of lines dropped.
+	 */
+	synchronized void addDropped(long count){
+		dropped += count;
+	}
+	
+	
+	/**
+	 * Adds a line to the end of the queue in memory.
+	 * 
+	 * @param line ServerOutputLine object containing the line to add.
+	 * @param generic Boolean representing whether or not the line is known to be generic.
+	 */
+	private void add(ServerOutputLine line, boolean generic){
+		Entry entry = new Entry(line, generic);
+		
+		lines.addLast(entry);
+		
+		if (generic){
+			generics.addLast(entry);
+		}
+		
+		++held;
+	}
+	
+	
+	/**
+	 * Takes the line at the front of the queue in memory, skipping the lines that were dropped.
+	 * 
+	 * @return ServerOutputLine object containing the line at the front of the queue. Null if it's empty.
+	 */
+	private ServerOutputLine takeFirst(){
+		Entry entry;
+		while ((entry = lines.pollFirst()) != null){
+			if (entry.dropped){
+				--tombstones;
+				
+				continue;
+			}
+			
+			
+			if (entry.generic){
+				generics.pollFirst();	//The oldest generic line is always the oldest line that's generic.
+			}
+			
+			--held;
+			
+			return entry.line;
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Drops the oldest generic line in the queue. Lines are only marked as dropped, and once they outnumber the 
+	 * lines still in the queue, they're cleared out all at once.
+	 * 
+	 * @return Whether or not a generic line was dropped.
+	 */
+	private boolean removeOldestGeneric(){
+		Entry entry = generics.pollFirst();
+		
+		if (entry == null){
+			return false;
+		}
+		
+		
+		entry.dropped = true;
+		
+		--held;
+		++tombstones;
+		
+		if (tombstones > held){
+			Iterator<Entry> iterator = lines.iterator();
+			while (iterator.hasNext()){
+				if (iterator.next().dropped){
+					iterator.remove();
+				}
+			}
+			
+			tombstones = 0;
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Writes a line to the end of the spill file, making the file the first time the queue spills. If the line 
+	 * can't be written, it's dropped.
+	 * <p>
+	 * The queue only ever makes one spill file, which is emptied and reused every time it spills again, so the 
+	 * file is only marked to be deleted on exit once.
+	 * 
+	 * @param line ServerOutputLine object containing the line to spill.
+	 */
+	private void spill(ServerOutputLine line){
+		try{
+			if (spill_file == null){
+				spill_file = File.createTempFile("anvil_" + tag + "_", ".spill");
+				spill_file.deleteOnExit();
+			}
+			
+			if (spill_out == null){
+				spill_out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spill_file)));
+				spill_in = new DataInputStream(new BufferedInputStream(new FileInputStream(spill_file)));
+			}
+			
+			
+			byte[] bytes = line.getEntireLine().getBytes(StandardCharsets.UTF_8);
+			
+			spill_out.writeInt(bytes.length);
+			spill_out.write(bytes);
+			
+			++spilled;
+		}
+		catch (IOException e){
+			++dropped;	//Better to lose the line than the reader.
+		}
+	}
+	
+	
+	/**
+	 * Reads spilled lines back into memory, up to the capacity of the queue. The spill file is emptied once it's 
+	 * been read back empty, and kept for the next time the queue spills. Lines read back are classified lazily, 
+	 * by whoever takes them.
+	 */
+	private void readSpill(){
+		try{
+			spill_out.flush();
+			
+			while (spilled > 0 && held < capacity){
+				byte[] bytes = new byte[spill_in.readInt()];
+				spill_in.readFully(bytes);
+				
+				add(new ServerOutputLine(new String(bytes, StandardCharsets.UTF_8), true), false);
+				
+				--spilled;
+			}
+		}
+		catch (IOException e){
+			dropped += spilled;
+			spilled = 0;
+		}
+		
+		
+		if (spilled == 0){
+			try{
+				spill_out.close();
+				spill_in.close();
+			}
+			catch (IOException e){
+				//Nothing, the file is being emptied anyways.
+			}
+			
+			spill_out = null;
+			spill_in = null;
+			
+			
+			try{
+				new FileOutputStream(spill_file).close();	//Empties it, so it doesn't take up the disk meanwhile.
+			}
+			catch (IOException e){
+				//The next spill empties it anyways.
+			}
+		}
+	}
+	
+	
+	/**
+	 * Represents a line in the queue, along with whether or not it's generic, and whether or not it was dropped.
+	 */
+	private static class Entry{
+		final ServerOutputLine line;
+		final boolean generic;
+		boolean dropped = false;
+		
+		
+		/**
+		 * Constructs an Entry object.
+		 * 
+		 * @param line ServerOutputLine object containing the line.
+		 * @param generic Boolean representing whether or not the line is known to be generic.
+		 */
+		Entry(ServerOutputLine line, boolean generic){
+			this.line = line;
+			this.generic = generic;
+		}
+	}
+}
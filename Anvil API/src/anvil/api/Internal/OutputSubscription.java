@@ -0,0 +1,154 @@
+package anvil.api.Internal;
+
+import java.util.concurrent.TimeUnit;
+
+import anvil.api.ServerOutputLine.ServerOutputLine;
+
+
+/**
+ * Represents 1 subscriber's view of a Runner's output lines.
+ * <p>
+ * Unlike {@link Runner#getNextOutputLine()}, reading from a subscription doesn't take the line away from anyone 
+ * else. Every subscription sees every line published after it was made, in order, at its own pace. The Runner 
+ * only keeps a limited number of recent lines around, so a subscription that falls too far behind skips ahead to 
+ * the recent lines, and is marked as slow. The lines it skipped are counted in {@link #getMissedLines()}.
+ * <p>
+ * A subscription is meant to be read by 1 thread. Each thread that wants the output should make its own.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see Runner#subscribeToOutput()
+ */
+public class OutputSubscription{
+	private OutputLineBus bus;
+	
+	private volatile long cursor;
+	private volatile long missed = 0;
+	private volatile boolean closed = false;
+	
+	
+	/**
+	 * Constructs an OutputSubscription object on the given bus.
+	 * 
+	 * @param bus OutputLineBus object to read from.
+	 * @param cursor Long representing the sequence of the first line to read.
+	 */
+	OutputSubscription(OutputLineBus bus, long cursor){
+		this.bus = bus;
+		this.cursor = cursor;
+	}
+	
+	
+	/**
+	 * Gets the next output line of this subscription.
+	 * <p>
+	 * This method is a blocking method, meaning that if there are no new output lines, this method makes the 
+	 * current thread wait indefinitely until there is one, which it will return. If the current thread is 
+	 * interrupted, or the subscription is closed, it'll return null.
+	 * 
+	 * @return ServerOutputLine object containing the next output line. Null if the current thread is interrupted, 
+	 * or the subscription is closed.
+	 */
+	public ServerOutputLine getNextOutputLine(){
+		return getNextOutputLine(Long.MAX_VALUE);
+	}
+	
+	
+	/**
+	 * Gets the next output line of this subscription, waiting up to the given time for one.
+	 * 
+	 * @param timeoutMillis Long representing the longest to wait for a line, in milliseconds.
+	 * @return ServerOutputLine object containing the next output line. Null if the time ran out, the current 
+	 * thread is interrupted, or the subscription is closed.
+	 */
+	public ServerOutputLine getNextOutputLine(long timeoutMillis){
+		long timeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		
+		while (!closed){
+			OutputLineBus.Entry entry = null;
+			
+			if (cursor <= bus.getPublished()){
+				entry = bus.get(cursor);
+			}
+			else{
+				try{
+					if (!bus.await(cursor, timeout, this)){
+						return null;
+					}
+				}
+				catch (InterruptedException e){
+					return null;
+				}
+				
+				continue;
+			}
+			
+			
+			if (entry.sequence == cursor){
+				++cursor;
+				
+				return entry.line;
+			}
+			
+			
+			//The ring lapped this subscription, skip ahead to half a ring behind the publisher:
+			long ahead = bus.getPublished() - bus.getCapacity() / 2 + 1;
+			
+			missed += ahead - cursor;
+			cursor = ahead;
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Gets how many published lines this subscription hasn't read yet.
+	 * 
+	 * @return Long representing how far behind the publisher this subscription is.
+	 */
+	public long getLag(){
+		return Math.max(0, bus.getPublished() + 1 - cursor);
+	}
+	
+	
+	/**
+	 * Gets how many lines this subscription skipped because it fell too far behind.
+	 * 
+	 * @return Long representing the number of missed lines.
+	 */
+	public long getMissedLines(){
+		return missed;
+	}
+	
+	
+	/**
+	 * Gets whether or not this subscription has ever fallen too far behind and missed lines.
+	 * 
+	 * @return Whether or not this subscription is slow.
+	 */
+	public boolean isSlow(){
+		return missed > 0;
+	}
+	
+	
+	/**
+	 * Closes this subscription. Any thread waiting on it gets null.
+	 */
+	public void close(){
+		closed = true;
+		
+		bus.wakeAll();
+	}
+	
+	
+	/**
+	 * Gets whether or not this subscription is closed.
+	 * 
+	 * @return Whether or not this subscription is closed.
+	 */
+	public boolean isClosed(){
+		return closed;
+	}
+}
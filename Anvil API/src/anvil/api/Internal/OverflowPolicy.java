@@ -0,0 +1,45 @@
+package anvil.api.Internal;
+
+
+/**
+ * Represents what a Runner does with a new output line when its output queue is full.
+ * <p>
+ * A Runner's output queue fills up when nothing takes lines out of it as fast as the server writes them (slow 
+ * PlugIns, or a server spamming its log). Each policy trades something different for keeping the wrapper's 
+ * memory bounded:
+ * <ul>
+ * <li>Block: The reader waits for room. No lines are lost, but the server stalls once it can't write.</li>
+ * <li>Drop generic: Generic lines are dropped, oldest first. Typed lines are only dropped when there are no 
+ * generic lines left. Lazy lines that haven't been classified yet count as typed.</li>
+ * <li>Drop oldest: The oldest line in the queue is dropped.</li>
+ * <li>Spill to disk: Lines that don't fit are written to a temporary file and read back, in order, as the 
+ * queue empties.</li>
+ * </ul>
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see Runner#setOutputQueue(int, OverflowPolicy)
+ */
+public enum OverflowPolicy{
+	/**
+	 * The reader waits for room in the queue.
+	 */
+	BLOCK,
+	
+	/**
+	 * Generic lines are dropped first, oldest first. Typed lines are only dropped when there are no generic lines 
+	 * left. Lazy lines that haven't been classified yet count as typed, since finding out would classify them.
+	 */
+	DROP_GENERIC,
+	
+	/**
+	 * The oldest line in the queue is dropped.
+	 */
+	DROP_OLDEST,
+	
+	/**
+	 * Lines that don't fit are written to a temporary file, and read back in order.
+	 */
+	SPILL_TO_DISK
+}
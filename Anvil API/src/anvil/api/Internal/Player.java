@@ -1,20 +1,21 @@
 package anvil.api.Internal;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
-import java.util.Scanner;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 
 /**
@@ -26,18 +27,24 @@ import javax.net.ssl.HttpsURLConnection;
  * "Players" are included in this list and have userName "@" and the UUID [null].
  * <p>
  * Because of the connection to Mojang's player-base servers, the wrapper only works with an Internet 
- * connection.
+ * connection. The connection goes through the {@link ProfileResolver}, which caches what it finds. Constructing 
+ * an unknown Player waits for Mojang's servers, so threads that can't wait should use 
+ * {@link #getPlayerAsync(String)} or {@link #getPlayerAsync(UUID)} instead.
  * <p>
- * Cached Players are dubbed as known Players.
+ * Cached Players are dubbed as known Players. Known Players are indexed by userName (ignoring case) and by UUID, 
+ * so looking one up doesn't depend on how many there are.
  * 
  * @author Garrett Stonis
  * @version 1.0
  */
 public class Player{
-	private static LinkedList<Player> knownPlayers = new LinkedList<>();
-	private static HashMap<String, LinkedList<Player>> oppedPlayers = new HashMap<>();
-	private static HashMap<String, LinkedList<Player>> bannedPlayers = new HashMap<>();
-	private static HashMap<String, LinkedList<Player>> whiteListedPlayers = new HashMap<>();
+	private static LinkedList<Player> knownPlayers = new LinkedList<>();	//Only for iterating, in order.
+	private static ConcurrentHashMap<String, Player> knownByUserName = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<UUID, Player> knownByUUID = new ConcurrentHashMap<>();
+	private static volatile Player knownCommandBlock = null;	//Its UUID is null, which can't be a key.
+	private static ConcurrentHashMap<String, PlayerSet> oppedPlayers = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, PlayerSet> bannedPlayers = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, PlayerSet> whiteListedPlayers = new ConcurrentHashMap<>();
 	
 	public static final String USERNAME_PATTERN = "(\\w{3,16}|@)";
 	public static final String UUID_PATTERN = 
@@ -52,7 +59,8 @@ public class Player{
 	private boolean is_cBlock = false;
 	
 	
-	private static boolean loaded = false;
+	private static volatile boolean loaded = false;
+	private static final Object load_lock = new Object();
 	
 	
 	static HashMap<String, LinkedList<op_data>> restart_data = new HashMap<>();
@@ -69,17 +77,13 @@ public class Player{
 	 * don't recognize it as a known Player.
 	 */
 	public Player(String userName) throws IOException, IllegalArgumentException{
-		if (!loaded){
-			loaded = true;
-			
-			firstLoad();
-		}
+		load();
 		
 		
 		Player other = getKnownPlayer(userName);
 		
 		if (other != null){
-			this.userName = userName;
+			this.userName = other.userName;
 			this.uuid = other.uuid;
 			this.is_cBlock = other.is_cBlock;
 			this.is_Opped = other.is_Opped;
@@ -98,61 +102,18 @@ public class Player{
 				this.userName = userName;
 				uuid = null;
 				
-				knownPlayers.add(this);
+				copyFrom(addKnownPlayer(this));
 			}
 			else{
-				String response = "";
-				try{
-					URL url = new URL("https://api.mojang.com/users/profiles/minecraft/" + userName);
-					HttpsURLConnection connection = (HttpsURLConnection)url.openConnection();
-					
-					
-					InputStream temp_stream = connection.getInputStream();
-			        BufferedReader br = new BufferedReader(new InputStreamReader(temp_stream));
-			
-			        String inputLine;
-			
-			        while ((inputLine = br.readLine()) != null){
-			            response += inputLine;
-			        }
-			
-			        br.close();
-				}
-				catch (IOException e){
-					throw new IOException("An internet connection to the Mojang playerbase server could not"
-							+ "be made.");
-				}
-				
+				ProfileResolver.Profile profile = await(ProfileResolver.resolve(userName));
 				
-				if (response.isEmpty()){
+				if (profile == null){
 					throw new IllegalArgumentException("\"" + userName + "\" is not a recognized userName, "
 							+ "according to Mojang's playerbase server.");
 				}
 				
 				
-				int pos = response.indexOf("\"id\":\"") + 6;
-				
-				StringBuilder UUIDString = new StringBuilder(response.substring(pos, pos + 32));
-				
-				UUIDString = UUIDString.insert(8, "-");
-				UUIDString = UUIDString.insert(13, "-");
-				UUIDString = UUIDString.insert(18, "-");
-				UUIDString = UUIDString.insert(23, "-");
-				
-				uuid = UUID.fromString(UUIDString.toString());
-				this.userName = userName;
-				
-				
-				Runner[] runnerArray = RunnerManager.getRunnerArray();
-				
-				for (int i = 0; i < runnerArray.length; ++i){
-					is_Opped.put(runnerArray[i].getTag(), false);
-					is_Banned.put(runnerArray[i].getTag(), false);
-					is_WhiteListed.put(runnerArray[i].getTag(), false);
-				}
-				
-				
-				knownPlayers.add(this);
+				setProfile(profile);
 			}
 		}
 	}
@@ -169,11 +130,7 @@ public class Player{
 	 * Player.
 	 */
 	public Player(UUID uuid) throws IOException, IllegalArgumentException{
-		if (!loaded){
-			loaded = true;
-			
-			firstLoad();
-		}
+		load();
 		
 		
 		Player other = getKnownPlayer(uuid);
@@ -193,58 +150,219 @@ public class Player{
 				this.uuid = uuid;
 				userName = "@";
 				
-				knownPlayers.add(this);
+				copyFrom(addKnownPlayer(this));
 			}
 			else{
-				String response = "";
-				try{
-					String UUIDString = uuid.toString();
-					UUIDString = UUIDString.replaceAll("-", "");
-					
-					URL url = new URL("https://api.mojang.com/user/profiles/" + UUIDString + "/names");
-					HttpsURLConnection connection = (HttpsURLConnection)url.openConnection();
-					
-					
-					InputStream temp_stream = connection.getInputStream();
-			        BufferedReader br = new BufferedReader(new InputStreamReader(temp_stream));
-			
-			        String inputLine;
-			
-			        while ((inputLine = br.readLine()) != null){
-			            response += inputLine;
-			        }
-			
-			        br.close();
-				}
-				catch (IOException e){
-					throw new IOException("An internet connection to the Mojang playerbase server could not"
-							+ "be made.");
-				}
+				ProfileResolver.Profile profile = await(ProfileResolver.resolve(uuid));
 				
-				
-				if (response.isEmpty()){
+				if (profile == null){
 					throw new IllegalArgumentException("\"" + uuid + "\" is not a recognized UUID, "
 							+ "according to Mojang's playerbase server.");
 				}
 				
 				
-				int pos = response.indexOf("\"name\":\"") + 8;
-				
-				userName = response.substring(pos, response.indexOf('\"', pos));
-				this.uuid = uuid;
+				setProfile(profile);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Constructs a Player object with a profile that was already resolved, so nothing is waited for. Only meant 
+	 * for {@link #getPlayerAsync(String)} and {@link #getPlayerAsync(UUID)}, which run it on the 
+	 * {@link ProfileResolver}'s threads. Those threads can't wait for another lookup, since it might need the 
+	 * same threads.
+	 * <p>
+	 * If the Player is known, this object is a copy of the known object.
+	 * 
+	 * @param profile ProfileResolver.Profile object containing the resolved profile of the Player.
+	 * @throws IOException When the wrapper cannot connect to Mojang's Servers.
+	 */
+	Player(ProfileResolver.Profile profile) throws IOException{
+		load();
+		
+		
+		Player other = getKnownPlayer(profile.getUUID());
+		
+		if (other != null){
+			copyFrom(other);
+		}
+		else{
+			setProfile(profile);
+		}
+	}
+	
+	
+	/**
+	 * Gives this Player the userName and UUID of the given profile, and no permissions on any Runner, then makes 
+	 * it known. If the UUID is already known by an old userName, this becomes a copy of the known Player instead.
+	 * 
+	 * @param profile ProfileResolver.Profile object containing the resolved profile of the Player.
+	 */
+	private void setProfile(ProfileResolver.Profile profile){
+		uuid = profile.getUUID();
+		userName = profile.getUserName();
+		
+		
+		Runner[] runnerArray = RunnerManager.getRunnerArray();
+		
+		for (int i = 0; i < runnerArray.length; ++i){
+			is_Opped.put(runnerArray[i].getTag(), false);
+			is_Banned.put(runnerArray[i].getTag(), false);
+			is_WhiteListed.put(runnerArray[i].getTag(), false);
+		}
+		
+		
+		copyFrom(addKnownPlayer(this));	//The UUID might be known by an old userName.
+	}
+	
+	
+	/**
+	 * Gets a Player object with the given userName without waiting for Mojang's servers. The same as 
+	 * {@link #Player(String)}, except that the lookup is done on the {@link ProfileResolver}'s threads, which 
+	 * then make the Player out of the profile they found. The first Player still waits for the server's Player 
+	 * files to be read on the calling thread, see {@link #load()}.
+	 * 
+	 * @param userName String object containing the userName of the Player.
+	 * @return CompletableFuture object that's completed with the Player. Completed exceptionally with what the 
+	 * constructor would have thrown.
+	 */
+	public static CompletableFuture<Player> getPlayerAsync(String userName){
+		try{
+			load();
+			
+			if (userName == null || !userName.matches(USERNAME_PATTERN) || userName.equals("@")
+					|| getKnownPlayer(userName) != null){
 				
+				return CompletableFuture.completedFuture(new Player(userName));	//Nothing to look up.
+			}
+		}
+		catch (IOException | RuntimeException e){
+			CompletableFuture<Player> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			
+			return failed;
+		}
+		
+		
+		return ProfileResolver.resolve(userName).thenApply(new Function<ProfileResolver.Profile, Player>(){
+			
+			@Override
+			public Player apply(ProfileResolver.Profile profile){
+				if (profile == null){
+					throw new IllegalArgumentException("\"" + userName + "\" is not a recognized userName, "
+							+ "according to Mojang's playerbase server.");
+				}
 				
-				Runner[] runnerArray = RunnerManager.getRunnerArray();
 				
-				for (int i = 0; i < runnerArray.length; ++i){
-					is_Opped.put(runnerArray[i].getTag(), false);
-					is_Banned.put(runnerArray[i].getTag(), false);
-					is_WhiteListed.put(runnerArray[i].getTag(), false);
+				try{
+					return new Player(profile);
+				}
+				catch (IOException e){
+					throw new CompletionException(e);
+				}
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Gets a Player object with the given UUID without waiting for Mojang's servers. The same as 
+	 * {@link #Player(UUID)}, except that the lookup is done the same way as in {@link #getPlayerAsync(String)}.
+	 * 
+	 * @param uuid UUID object containing the UUID of the Player.
+	 * @return CompletableFuture object that's completed with the Player. Completed exceptionally with what the 
+	 * constructor would have thrown.
+	 */
+	public static CompletableFuture<Player> getPlayerAsync(UUID uuid){
+		try{
+			load();
+			
+			if (uuid == null || getKnownPlayer(uuid) != null){
+				return CompletableFuture.completedFuture(new Player(uuid));	//Nothing to look up.
+			}
+		}
+		catch (IOException | RuntimeException e){
+			CompletableFuture<Player> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			
+			return failed;
+		}
+		
+		
+		return ProfileResolver.resolve(uuid).thenApply(new Function<ProfileResolver.Profile, Player>(){
+			
+			@Override
+			public Player apply(ProfileResolver.Profile profile){
+				if (profile == null){
+					throw new IllegalArgumentException("\"" + uuid + "\" is not a recognized UUID, "
+							+ "according to Mojang's playerbase server.");
 				}
 				
 				
-				knownPlayers.add(this);
+				try{
+					return new Player(profile);
+				}
+				catch (IOException e){
+					throw new CompletionException(e);
+				}
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Reads the server's Player files the first time any Player is made, see {@link #firstLoad()}. Threads that 
+	 * get here while the files are being read wait for them, so no Player is made before the ones in the files. 
+	 * The files are only read once, even if reading them failed.
+	 * 
+	 * @throws IOException Files couldn't be found or Mojang's servers couldn't be reached.
+	 * @throws IllegalArgumentException A bad UUID was found in the files.
+	 */
+	private static void load() throws IOException, IllegalArgumentException{
+		if (loaded){
+			return;
+		}
+		
+		
+		synchronized (load_lock){
+			if (!loaded){
+				try{
+					firstLoad();
+				}
+				finally{
+					loaded = true;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Waits for a lookup of the {@link ProfileResolver}.
+	 * 
+	 * @param lookup CompletableFuture object containing the lookup.
+	 * @return The result of the lookup. Null if Mojang's servers don't know the Player.
+	 * @throws IOException When the wrapper cannot connect to Mojang's Servers.
+	 */
+	private static <T> T await(CompletableFuture<T> lookup) throws IOException{
+		try{
+			return lookup.get();
+		}
+		catch (ExecutionException e){
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
 			}
+			
+			throw new IOException("An internet connection to the Mojang playerbase server could not be made.",
+					e.getCause());
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			
+			throw new IOException("Interrupted while waiting for the Mojang playerbase server.", e);
 		}
 	}
 	
@@ -254,20 +372,19 @@ public class Player{
 	 * <em>ban</em>, and <em>white</em> arrays should align with the index of the <em>tag</em> array for which 
 	 * Runner object the Player has these properties.
 	 * <p>
-	 * This is only meant to be run from the firstLoad() method.
+	 * This is only meant to be run from the firstLoad() method, which already knows the UUID of the Player.
 	 * 
 	 * @param userName String object containing the userName of the Player.
+	 * @param uuid UUID object containing the UUID of the Player.
 	 * @param tag String array containing the Runner tags for each Runner object in the manager.
 	 * @param op Boolean array representing whether or not the Player is opped for the index of the tag.
 	 * @param ban Boolean array representing whether or not the Player is banned for the index of the tag.
 	 * @param white Boolean array representing whether or not the Player is white-listed for the index of the 
 	 * tag.
-	 * @throws IOException When the wrapper cannot connect to Mojang's Servers.
-	 * @throws IllegalArgumentException When the userName isn't a legal userName, or when Mojang's servers 
-	 * don't recognize it as a known Player.
+	 * @throws IllegalArgumentException When the Player is already known, or the arrays are of unequal lengths.
 	 */
-	private Player(String userName, String[] tag, boolean[] op, boolean[] ban, boolean[] white)
-			throws IOException, IllegalArgumentException{
+	private Player(String userName, UUID uuid, String[] tag, boolean[] op, boolean[] ban, boolean[] white)
+			throws IllegalArgumentException{
 		
 		if (tag.length != op.length || op.length != ban.length || ban.length != white.length){
 			throw new IllegalArgumentException("The given arrays are of unequal lengths, you messed up.");
@@ -280,45 +397,7 @@ public class Player{
 			throw new IllegalArgumentException("The Player \"" + other.getUserName() + "\" is already known.");
 		}
 		else{
-			String response = "";
-			try{
-				URL url = new URL("https://api.mojang.com/users/profiles/minecraft/" + userName);
-				HttpsURLConnection connection = (HttpsURLConnection)url.openConnection();
-				
-				
-				InputStream temp_stream = connection.getInputStream();
-		        BufferedReader br = new BufferedReader(new InputStreamReader(temp_stream));
-		
-		        String inputLine;
-		
-		        while ((inputLine = br.readLine()) != null){
-		            response += inputLine;
-		        }
-		
-		        br.close();
-			}
-			catch (IOException e){
-				throw new IOException("An internet connection to the Mojang playerbase server could not"
-						+ "be made.");
-			}
-			
-			
-			if (response.isEmpty()){
-				throw new IllegalArgumentException("\"" + userName + "\" is not a recognized userName, "
-						+ "according to Mojang's playerbase server.");
-			}
-			
-			
-			int pos = response.indexOf("\"id\":\"") + 6;
-			
-			StringBuilder UUIDString = new StringBuilder(response.substring(pos, pos + 32));
-			
-			UUIDString = UUIDString.insert(8, "-");
-			UUIDString = UUIDString.insert(13, "-");
-			UUIDString = UUIDString.insert(18, "-");
-			UUIDString = UUIDString.insert(23, "-");
-			
-			uuid = UUID.fromString(UUIDString.toString());
+			this.uuid = uuid;
 			this.userName = userName;
 			
 			
@@ -326,26 +405,26 @@ public class Player{
 				is_Opped.put(tag[i], op[i]);
 				
 				if (op[i]){
-					oppedPlayers.get(tag[i]).add(this);
+					getPlayerSet(oppedPlayers, tag[i]).add(this);
 				}
 				
 				
 				is_Banned.put(tag[i], ban[i]);
 				
 				if (ban[i]){
-					bannedPlayers.get(tag[i]).add(this);
+					getPlayerSet(bannedPlayers, tag[i]).add(this);
 				}
 				
 				
 				is_WhiteListed.put(tag[i], white[i]);
 				
 				if (white[i]){
-					whiteListedPlayers.get(tag[i]).add(this);
+					getPlayerSet(whiteListedPlayers, tag[i]).add(this);
 				}
 			}
 			
 			
-			knownPlayers.add(this);
+			addKnownPlayer(this);
 		}
 	}
 	
@@ -353,20 +432,21 @@ public class Player{
 	/**
 	 * Sets the opped, banned, and white-listed Players. Runs every time the wrapper first interacts with a 
 	 * Player.
+	 * <p>
+	 * The UUIDs are taken straight from the files. Only the userNames listed without one are looked up, with 
+	 * {@link ProfileResolver#resolveAll(java.util.Collection)}, and userNames Mojang doesn't know are skipped. 
+	 * The userNames in the files might be outdated, so only the ones Mojang returned are cached (and recorded in 
+	 * the {@link ProfileStore}).
 	 * 
 	 * @throws IOException Files couldn't be found or Mojang's servers couldn't be reached.
-	 * @throws IllegalArgumentException A bad userName was found in the files (who's fuckin with the files??).
+	 * @throws IllegalArgumentException A bad UUID was found in the files (who's fuckin with the files??).
 	 */
 	private static void firstLoad() throws IllegalArgumentException, IOException{
-		LinkedList<String> found_userNames_list = new LinkedList<>();
-		
-		
 		//Player name, Runner tag, obw_data:
 		LinkedHashMap<String, LinkedHashMap<String, obw_data>> obw_map = new LinkedHashMap<>();
 		
-		String line;
-		int pos;
-		String name;
+		//Player name, UUID (if the files have it):
+		HashMap<String, UUID> uuids = new HashMap<>();
 		
 		
 		Runner[] runnerArray = RunnerManager.getRunnerArray();
@@ -374,172 +454,139 @@ public class Player{
 		
 		//Create the correct static objects:
 		for (int i = 0; i < runnerArray.length; ++i){
-			oppedPlayers.put(runnerArray[i].getTag(), new LinkedList<>());
-			bannedPlayers.put(runnerArray[i].getTag(), new LinkedList<>());
-			whiteListedPlayers.put(runnerArray[i].getTag(), new LinkedList<>());
+			oppedPlayers.put(runnerArray[i].getTag(), new PlayerSet());
+			bannedPlayers.put(runnerArray[i].getTag(), new PlayerSet());
+			whiteListedPlayers.put(runnerArray[i].getTag(), new PlayerSet());
 		}
 		
 		
 		//Loop through each existing Runner in the manager:
-		Scanner reader = null;
 		for (int i = 0; i < runnerArray.length; ++i){
-			
-			// {{ Ops:
-			
-			reader = new Scanner(new File(runnerArray[i].getRunFile().getParent() + "/ops.json"));
-			
-			while (reader.hasNextLine()){
-				line = reader.nextLine();
-				
-				pos = line.indexOf("\"name\": \"");
-				
-				if (pos == -1){
-					continue;
-				}
-				
-				
-				pos += 9;
-				name = line.substring(pos, line.indexOf('\"', pos));
-				
-				pos = found_userNames_list.indexOf(name);	//pos is now used differently.
-				
-				
-				if (pos == -1){	//New "name".
-					found_userNames_list.add(name);
-					
-					obw_map.put(name, new LinkedHashMap<>());
-					obw_map.get(name).put(runnerArray[i].getTag(), new obw_data(true, false, false));
-				}
-				else{	//"name" already exists.
-					if (obw_map.get(name).containsKey(runnerArray[i].getTag())){
-						obw_map.get(name).get(runnerArray[i].getTag()).opped = true;
-					}
-					else{
-						obw_map.get(name).put(runnerArray[i].getTag(), new obw_data(true, false, false));
-					}
-				}
+			String directory = runnerArray[i].getRunFile().getParent();
+			String tag = runnerArray[i].getTag();
+			
+			readPlayerFile(new File(directory + "/ops.json"), tag, obw_map, uuids,
+					new obw_data(true, false, false));
+			readPlayerFile(new File(directory + "/banned-players.json"), tag, obw_map, uuids,
+					new obw_data(false, true, false));
+			readPlayerFile(new File(directory + "/whitelist.json"), tag, obw_map, uuids,
+					new obw_data(false, false, true));
+		}
+		
+		
+		// {{ Look Up Missing UUIDs:
+		
+		LinkedList<String> missing = new LinkedList<>();
+		
+		for (String name : obw_map.keySet()){
+			if (uuids.get(name) == null){
+				missing.add(name);
 			}
+		}
+		
+		
+		if (!missing.isEmpty()){
+			Map<String, ProfileResolver.Profile> profiles = await(ProfileResolver.resolveAll(missing));
 			
-			reader.close();
-			
-			// }} Ops:
-			
-			
-			// {{ Banned:
-			
-			reader = new Scanner(new File(runnerArray[i].getRunFile().getParent() + "/banned-players.json"));
-			
-			while (reader.hasNextLine()){
-				line = reader.nextLine();
+			for (String name : missing){
+				ProfileResolver.Profile profile = profiles.get(name);
 				
-				pos = line.indexOf("\"name\": \"");
-				
-				if (pos == -1){
-					continue;
+				if (profile == null){
+					obw_map.remove(name);	//Mojang doesn't know it, so there's no Player to make.
 				}
-				
-				
-				pos += 9;
-				name = line.substring(pos, line.indexOf('\"', pos));
-				
-				pos = found_userNames_list.indexOf(name);	//pos is now used differently.
-				
-				if (pos == -1){	//New "name".
-					found_userNames_list.add(name);
-					
-					obw_map.put(name, new LinkedHashMap<>());
-					obw_map.get(name).put(runnerArray[i].getTag(), new obw_data(false, true, false));
-				}
-				else{	//"name" already exists.
-					if (obw_map.get(name).containsKey(runnerArray[i].getTag())){
-						obw_map.get(name).get(runnerArray[i].getTag()).banned = true;
-					}
-					else{
-						obw_map.get(name).put(runnerArray[i].getTag(), new obw_data(false, true, false));
-					}
+				else{
+					uuids.put(name, profile.getUUID());
 				}
 			}
+		}
+		
+		// }} Look Up Missing UUIDs:
+		
+		
+		//Add to knowns:
+		for (String name : obw_map.keySet()){
+			LinkedHashMap<String, obw_data> temp_map = obw_map.get(name);
 			
-			reader.close();
+			String[] tags = temp_map.keySet().toArray(new String[0]);
+			obw_data[] data = temp_map.values().toArray(new obw_data[0]);
 			
-			// }} Banned:
+			boolean[] ops = new boolean[data.length];
+			boolean[] bans = new boolean[data.length];
+			boolean[] whites = new boolean[data.length];
 			
+			for (int q = 0; q < data.length; ++q){
+				ops[q] = data[q].opped;
+				bans[q] = data[q].banned;
+				whites[q] = data[q].whited;
+			}
 			
-			// {{ White-listed:
 			
-			reader = new Scanner(new File(runnerArray[i].getRunFile().getParent() + "/whitelist.json"));
+			UUID uuid = uuids.get(name);
 			
-			while (reader.hasNextLine()){
-				line = reader.nextLine();
-				
-				pos = line.indexOf("\"name\": \"");
-				
-				if (pos == -1){
-					continue;
-				}
-				
-				
-				pos += 9;
-				name = line.substring(pos, line.indexOf('\"', pos));
-				
-				pos = found_userNames_list.indexOf(name);	//pos is now used differently.
-				
-				if (pos == -1){	//New "name".
-					found_userNames_list.add(name);
-					
-					obw_map.put(name, new LinkedHashMap<>());
-					obw_map.get(name).put(runnerArray[i].getTag(), new obw_data(false, false, true));
-				}
-				else{	//"name" already exists.
-					if (obw_map.get(name).containsKey(runnerArray[i].getTag())){
-						obw_map.get(name).get(runnerArray[i].getTag()).whited = true;
-					}
-					else{
-						obw_map.get(name).put(runnerArray[i].getTag(), new obw_data(false, false, true));
-					}
-				}
+			if (getKnownPlayer(uuid) == null){
+				new Player(name, uuid, tags, ops, bans, whites);
 			}
-			
-			reader.close();
-			
-			// }} White-listed:
 		}
+	}
+	
+	
+	/**
+	 * Reads the Players out of one of a server's Player files (ops.json, banned-players.json, or whitelist.json).
+	 * 
+	 * @param file File object containing the Player file.
+	 * @param tag String object containing the tag of the Runner the file belongs to.
+	 * @param obw_map LinkedHashMap to put what the file says about each Player in, by Player name and Runner tag.
+	 * @param uuids HashMap to put the UUID of each Player in, by Player name.
+	 * @param listed obw_data object containing what being in the file means.
+	 * @throws IOException When the file couldn't be read.
+	 * @throws IllegalArgumentException When the file has a bad UUID in it.
+	 */
+	private static void readPlayerFile(File file, String tag, LinkedHashMap<String, LinkedHashMap<String, obw_data>>
+			obw_map, HashMap<String, UUID> uuids, obw_data listed) throws IOException, IllegalArgumentException{
 		
+		String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
 		
-		//Add to knowns:
-		String[] names = new String[0];
-		String[] tags = new String[0];
-		
-		obw_data[] data = new obw_data[0];
-		boolean[] ops = new boolean[0];
-		boolean[] bans = new boolean[0];
-		boolean[] whites = new boolean[0];
-		
-		
-		names = obw_map.keySet().toArray(names);
-		LinkedHashMap<String, obw_data> temp_map = null;
 		
+		int start = json.indexOf('{');
 		
-		for (int i = 0; i < names.length; ++i){
-			//new Player(found_userNames[i], is_ops_map.get(name)., is_bans[i], is_whites[i]);
+		while (start != -1){
+			int end = json.indexOf('}', start);
 			
-			temp_map = obw_map.get(names[i]);
+			if (end == -1){
+				break;
+			}
 			
-			tags = temp_map.keySet().toArray(tags);
-			data = temp_map.values().toArray(data);
 			
-			ops = new boolean[data.length];
-			bans = new boolean[data.length];
-			whites = new boolean[data.length];
+			String entry = json.substring(start, end + 1);
+			start = json.indexOf('{', end);
 			
-			for (int q = 0; q < data.length; ++q){
-				ops[q] = data[q].opped;
-				bans[q] = data[q].banned;
-				whites[q] = data[q].whited;
+			String name = ProfileResolver.getJSONString(entry, "name", 0);
+			String uuid = ProfileResolver.getJSONString(entry, "uuid", 0);
+			
+			if (name == null){
+				continue;
 			}
 			
 			
-			new Player(names[i], tags, ops, bans, whites);
+			if (!obw_map.containsKey(name)){	//New "name".
+				obw_map.put(name, new LinkedHashMap<>());
+			}
+			
+			if (uuid != null && uuids.get(name) == null){
+				uuids.put(name, ProfileResolver.parseUUID(uuid));
+			}
+			
+			
+			obw_data data = obw_map.get(name).get(tag);
+			
+			if (data == null){
+				obw_map.get(name).put(tag, new obw_data(listed.opped, listed.banned, listed.whited));
+			}
+			else{
+				data.opped |= listed.opped;
+				data.banned |= listed.banned;
+				data.whited |= listed.whited;
+			}
 		}
 	}
 	
@@ -590,69 +637,161 @@ public class Player{
 	
 	
 	/**
-	 * Gets the known Player with the given userName.
+	 * Adds the Player to the known Players. If a known Player already has the same UUID, that Player has changed 
+	 * its userName since it was known, so it's renamed to the new userName instead of being known twice.
+	 * 
+	 * @param player Player object containing the Player to add.
+	 * @return Known Player object with the Player's UUID. The given Player, unless one was already known.
+	 */
+	private static synchronized Player addKnownPlayer(Player player){
+		Player known = (player.uuid == null) ? knownCommandBlock : knownByUUID.get(player.uuid);
+		
+		if (known != null){
+			if (!known.userName.equals(player.userName)){
+				String oldUserName = known.userName;
+				
+				knownByUserName.remove(getUserNameKey(oldUserName), known);
+				
+				known.userName = player.userName;
+				knownByUserName.put(getUserNameKey(known.userName), known);
+				
+				
+				for (PlayerSet set : oppedPlayers.values()){
+					set.rename(oldUserName, known);
+				}
+				
+				for (PlayerSet set : bannedPlayers.values()){
+					set.rename(oldUserName, known);
+				}
+				
+				for (PlayerSet set : whiteListedPlayers.values()){
+					set.rename(oldUserName, known);
+				}
+			}
+			
+			return known;
+		}
+		
+		
+		if (player.uuid == null){
+			knownCommandBlock = player;
+		}
+		else{
+			knownByUUID.put(player.uuid, player);
+		}
+		
+		knownByUserName.put(getUserNameKey(player.userName), player);
+		knownPlayers.add(player);
+		
+		
+		return player;
+	}
+	
+	
+	/**
+	 * Makes this Player a copy of the given Player, if it isn't that Player already.
+	 * 
+	 * @param other Player object containing the Player to copy.
+	 */
+	private void copyFrom(Player other){
+		if (other == this){
+			return;
+		}
+		
+		userName = other.userName;
+		uuid = other.uuid;
+		is_cBlock = other.is_cBlock;
+		is_Opped = other.is_Opped;
+		is_Banned = other.is_Banned;
+		is_WhiteListed = other.is_WhiteListed;
+	}
+	
+	
+	/**
+	 * Gets the key the given userName is indexed by. userNames aren't case sensitive.
+	 * 
+	 * @param userName String object containing the userName.
+	 * @return String object containing the key of the userName.
+	 */
+	static String getUserNameKey(String userName){
+		return userName.toLowerCase(Locale.ROOT);
+	}
+	
+	
+	/**
+	 * Gets the known Player with the given userName, ignoring case.
 	 * 
 	 * @param userName String object containing the userName of the Player to get.
 	 * @return Known Player object with the given userName, null if unknown.
 	 */
 	public static Player getKnownPlayer(String userName){
-		Iterator<Player> iterator = knownPlayers.iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.userName == null && userName == null){
-				return player;
-			}
-			else if (player.userName.equals(userName)){
-				return player;
-			}
+		if (userName == null){
+			return null;
 		}
 		
-		return null;
+		return knownByUserName.get(getUserNameKey(userName));
 	}
 	
 	
 	/**
-	 * Gets the known Player with the given UUID.
+	 * Gets the known Player with the given UUID. The command block "Player" has the UUID [null].
 	 * 
 	 * @param uuid UUID object containing the UUID of the Player to get.
 	 * @return Known Player object with the given UUID, null if unknown.
 	 */
 	public static Player getKnownPlayer(UUID uuid){
-		Iterator<Player> iterator = knownPlayers.iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.uuid == null){
-				if (uuid == null){
-					return player;
-				}
-			}
-			else if (player.uuid.equals(uuid)){
-				return player;
-			}
+		if (uuid == null){
+			return knownCommandBlock;
 		}
 		
-		return null;
+		return knownByUUID.get(uuid);
 	}
 	
 	
 	/**
-	 * Gets an array of the known Players.
+	 * Gets an array of the known Players, in the order they became known.
 	 * 
 	 * @return Array containing all the known Players.
 	 */
-	public static Player[] getKnownPlayers(){
+	public static synchronized Player[] getKnownPlayers(){
 		Player[] players = new Player[0];
 		
 		return knownPlayers.toArray(players);
 	}
 	
 	
+	/**
+	 * Gets the set of Players for the Runner with the given <em>tag</em> out of the given map, making an empty 
+	 * one if there isn't one.
+	 * 
+	 * @param sets ConcurrentHashMap containing the sets of Players, by Runner tag.
+	 * @param tag String object containing the tag of the Runner.
+	 * @return PlayerSet object containing the Players of the Runner.
+	 */
+	private static PlayerSet getPlayerSet(ConcurrentHashMap<String, PlayerSet> sets, String tag){
+		return sets.computeIfAbsent(tag, new Function<String, PlayerSet>(){
+			
+			@Override
+			public PlayerSet apply(String key){
+				return new PlayerSet();
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Gets the opped Players of the Runner with the given <em>tag</em>, without copying them. Only meant for 
+	 * iterating over.
+	 * 
+	 * @param tag String object containing the tag of the Runner that has the desired opped players.
+	 * @return Array containing all the opped Players in the designate Runner, which must not be changed.
+	 */
+	static Player[] getOppedSnapshot(String tag){
+		return getPlayerSet(oppedPlayers, tag).getSnapshot();
+	}
+	
+	
 	/**
 	 * Gets the opped Player with the given userName from the Runner with the given <em>tag</em>.
 	 * 
@@ -661,21 +800,7 @@ public class Player{
 	 * @return Opped Player object with the given userName, null if not opped.
 	 */
 	public static Player getOppedPlayer(String tag, String userName){
-		Iterator<Player> iterator = oppedPlayers.get(tag).iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.userName == null && userName == null){
-				return player;
-			}
-			else if (player.userName.equals(userName)){
-				return player;
-			}
-		}
-		
-		return null;
+		return getPlayerSet(oppedPlayers, tag).get(userName);
 	}
 	
 	
@@ -687,23 +812,7 @@ public class Player{
 	 * @return Opped Player object with the given UUID, null if not opped.
 	 */
 	public static Player getOppedPlayer(String tag, UUID uuid){
-		Iterator<Player> iterator = oppedPlayers.get(tag).iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.uuid == null){
-				if (uuid == null){
-					return player;
-				}
-			}
-			else if (player.uuid.equals(uuid)){
-				return player;
-			}
-		}
-		
-		return null;
+		return getPlayerSet(oppedPlayers, tag).get(uuid);
 	}
 	
 	
@@ -714,9 +823,7 @@ public class Player{
 	 * @return Array containing all the opped Players in the designate Runner.
 	 */
 	public static Player[] getOppedPlayers(String tag){
-		Player[] players = new Player[0];
-		
-		return oppedPlayers.get(tag).toArray(players);
+		return getPlayerSet(oppedPlayers, tag).getSnapshot().clone();
 	}
 	
 	
@@ -728,21 +835,7 @@ public class Player{
 	 * @return Banned Player object with the given userName, null if not banned.
 	 */
 	public static Player getBannedPlayer(String tag, String userName){
-		Iterator<Player> iterator = bannedPlayers.get(tag).iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.userName == null && userName == null){
-				return player;
-			}
-			else if (player.userName.equals(userName)){
-				return player;
-			}
-		}
-		
-		return null;
+		return getPlayerSet(bannedPlayers, tag).get(userName);
 	}
 	
 	
@@ -754,23 +847,7 @@ public class Player{
 	 * @return Banned Player object with the given UUID, null if not banned.
 	 */
 	public static Player getBannedPlayer(String tag, UUID uuid){
-		Iterator<Player> iterator = bannedPlayers.get(tag).iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.uuid == null){
-				if (uuid == null){
-					return player;
-				}
-			}
-			else if (player.uuid.equals(uuid)){
-				return player;
-			}
-		}
-		
-		return null;
+		return getPlayerSet(bannedPlayers, tag).get(uuid);
 	}
 	
 	
@@ -781,9 +858,7 @@ public class Player{
 	 * @return Array containing all the banned Players in the designate Runner.
 	 */
 	public static Player[] getBannedPlayers(String tag){
-		Player[] players = new Player[0];
-		
-		return bannedPlayers.get(tag).toArray(players);
+		return getPlayerSet(bannedPlayers, tag).getSnapshot().clone();
 	}
 	
 	
@@ -795,21 +870,7 @@ public class Player{
 	 * @return White-listed Player object with the given userName, null if not white-listed.
 	 */
 	public static Player getWhiteListedPlayer(String tag, String userName){
-		Iterator<Player> iterator = whiteListedPlayers.get(tag).iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.userName == null && userName == null){
-				return player;
-			}
-			else if (player.userName.equals(userName)){
-				return player;
-			}
-		}
-		
-		return null;
+		return getPlayerSet(whiteListedPlayers, tag).get(userName);
 	}
 	
 	
@@ -821,23 +882,7 @@ public class Player{
 	 * @return White-listed Player object with the given UUID, null if not white-listed.
 	 */
 	public static Player getWhiteListedPlayer(String tag, UUID uuid){
-		Iterator<Player> iterator = whiteListedPlayers.get(tag).iterator();
-		
-		Player player = null;
-		while (iterator.hasNext()){
-			player = iterator.next();
-			
-			if (player.uuid == null){
-				if (uuid == null){
-					return player;
-				}
-			}
-			else if (player.uuid.equals(uuid)){
-				return player;
-			}
-		}
-		
-		return null;
+		return getPlayerSet(whiteListedPlayers, tag).get(uuid);
 	}
 	
 	
@@ -848,9 +893,7 @@ public class Player{
 	 * @return Array containing all the white-listed Players.
 	 */
 	public static Player[] getWhiteListedPlayers(String tag){
-		Player[] players = new Player[0];
-		
-		return whiteListedPlayers.get(tag).toArray(players);
+		return getPlayerSet(whiteListedPlayers, tag).getSnapshot().clone();
 	}
 	
 	
@@ -945,7 +988,7 @@ public class Player{
 			server.flush();
 			
 			is_Opped.put(tag, true);
-			oppedPlayers.get(tag).add(this);
+			getPlayerSet(oppedPlayers, tag).add(this);
 			
 			
 			if (restart_data.containsKey(tag)){
@@ -969,7 +1012,7 @@ public class Player{
 			server.flush();
 			
 			is_Opped.put(tag, false);
-			oppedPlayers.get(tag).remove(this);
+			getPlayerSet(oppedPlayers, tag).remove(this);
 			
 			
 			LinkedList<op_data> temp = restart_data.get(tag);
@@ -1023,7 +1066,7 @@ public class Player{
 			server.flush();
 			
 			is_Opped.put(tag, true);
-			oppedPlayers.get(tag).add(this);
+			getPlayerSet(oppedPlayers, tag).add(this);
 		}
 		else{
 			if (!is_Opped.get(tag)){
@@ -1036,7 +1079,7 @@ public class Player{
 			server.flush();
 			
 			is_Opped.put(tag, false);
-			oppedPlayers.get(tag).remove(this);
+			getPlayerSet(oppedPlayers, tag).remove(this);
 			
 			
 			LinkedList<op_data> temp = restart_data.get(tag);
@@ -1128,7 +1171,7 @@ public class Player{
 			}
 			
 			is_Banned.put(tag, true);
-			bannedPlayers.get(tag).add(this);
+			getPlayerSet(bannedPlayers, tag).add(this);
 		}
 		else{
 			if (!is_Banned.get(tag)){
@@ -1141,7 +1184,7 @@ public class Player{
 			server.flush();
 			
 			is_Banned.put(tag, false);
-			bannedPlayers.get(tag).remove(this);
+			getPlayerSet(bannedPlayers, tag).remove(this);
 		}
 		
 		return true;
@@ -1194,7 +1237,7 @@ public class Player{
 			server.flush();
 			
 			is_WhiteListed.put(tag, true);
-			whiteListedPlayers.get(tag).add(this);
+			getPlayerSet(whiteListedPlayers, tag).add(this);
 		}
 		else{
 			if (!is_WhiteListed.get(tag)){
@@ -1207,7 +1250,7 @@ public class Player{
 			server.flush();
 			
 			is_WhiteListed.put(tag, false);
-			whiteListedPlayers.get(tag).remove(this);
+			getPlayerSet(whiteListedPlayers, tag).remove(this);
 		}
 		
 		return true;
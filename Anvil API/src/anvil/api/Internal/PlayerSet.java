@@ -0,0 +1,147 @@
+package anvil.api.Internal;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Represents a set of Players of a single Runner, like its opped, banned, or white-listed Players.
+ * <p>
+ * The Players are indexed by userName (ignoring case) and by UUID, so checking if a Player is in the set doesn't 
+ * depend on how many Players are in it. For iterating, the set hands out a snapshot array that's only made again 
+ * after the set changes, so iterating doesn't copy anything most of the time.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see Player
+ */
+class PlayerSet{
+	private ConcurrentHashMap<String, Player> byUserName = new ConcurrentHashMap<>();
+	private ConcurrentHashMap<UUID, Player> byUUID = new ConcurrentHashMap<>();
+	
+	private volatile Player[] snapshot = new Player[0];
+	
+	
+	/**
+	 * Adds the Player to the set. Does nothing if a Player with the same userName is already in it.
+	 * 
+	 * @param player Player object containing the Player to add.
+	 * @return Whether or not the Player was added.
+	 */
+	synchronized boolean add(Player player){
+		if (byUserName.putIfAbsent(Player.getUserNameKey(player.getUserName()), player) != null){
+			return false;
+		}
+		
+		if (player.getUUID() != null){	//Command blocks don't have one.
+			byUUID.put(player.getUUID(), player);
+		}
+		
+		snapshot = null;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Removes the Player with the same userName as the given Player from the set.
+	 * 
+	 * @param player Player object containing the Player to remove.
+	 * @return Whether or not a Player was removed.
+	 */
+	synchronized boolean remove(Player player){
+		Player removed = byUserName.remove(Player.getUserNameKey(player.getUserName()));
+		
+		if (removed == null){
+			return false;
+		}
+		
+		if (removed.getUUID() != null){
+			byUUID.remove(removed.getUUID());
+		}
+		
+		snapshot = null;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Moves the Player that was in the set under its old userName to its new userName. Does nothing if the old 
+	 * userName isn't in the set.
+	 * 
+	 * @param oldUserName String object containing the old userName of the Player.
+	 * @param player Player object containing the Player, with its new userName.
+	 */
+	synchronized void rename(String oldUserName, Player player){
+		Player removed = byUserName.remove(Player.getUserNameKey(oldUserName));
+		
+		if (removed == null){
+			return;
+		}
+		
+		
+		byUserName.put(Player.getUserNameKey(player.getUserName()), player);
+		
+		if (player.getUUID() != null){
+			byUUID.put(player.getUUID(), player);
+		}
+		
+		snapshot = null;
+	}
+	
+	
+	/**
+	 * Gets the Player in the set with the given userName, ignoring case.
+	 * 
+	 * @param userName String object containing the userName of the Player to get.
+	 * @return Player object with the given userName, null if it isn't in the set.
+	 */
+	Player get(String userName){
+		if (userName == null){
+			return null;
+		}
+		
+		return byUserName.get(Player.getUserNameKey(userName));
+	}
+	
+	
+	/**
+	 * Gets the Player in the set with the given UUID. The command block "Player" has the UUID [null].
+	 * 
+	 * @param uuid UUID object containing the UUID of the Player to get.
+	 * @return Player object with the given UUID, null if it isn't in the set.
+	 */
+	Player get(UUID uuid){
+		if (uuid == null){
+			return get("@");
+		}
+		
+		return byUUID.get(uuid);
+	}
+	
+	
+	/**
+	 * Gets a snapshot of the Players in the set. The same array is handed out until the set changes, so it must 
+	 * not be changed.
+	 * 
+	 * @return Array containing all the Players in the set.
+	 */
+	Player[] getSnapshot(){
+		Player[] players = snapshot;
+		
+		if (players != null){
+			return players;
+		}
+		
+		
+		synchronized (this){
+			if (snapshot == null){
+				snapshot = byUserName.values().toArray(new Player[0]);
+			}
+			
+			return snapshot;
+		}
+	}
+}
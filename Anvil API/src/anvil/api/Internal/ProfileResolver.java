@@ -0,0 +1,731 @@
+package anvil.api.Internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+
+/**
+ * Resolves Player profiles (userNames and UUIDs) through Mojang's playerbase server, without blocking whoever 
+ * asks.
+ * <p>
+ * Every lookup returns a CompletableFuture that's completed on one of the resolver's own threads. Lookups of the 
+ * same userName or UUID that happen at the same time share a single request. Results are cached for a while, 
+ * including the names and UUIDs Mojang doesn't know, so a misspelled name doesn't cost a request every time. 
+ * Failed requests aren't cached.
+ * <p>
+ * Every profile that's resolved is also remembered by the {@link ProfileStore}, which is asked before Mojang's 
+ * server, so Players that were resolved before the wrapper restarted don't cost a request.
+ * <p>
+ * The address of the playerbase server can be changed, see {@link #setBaseURL(String)}.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see Player
+ */
+public class ProfileResolver{
+	/**
+	 * The address of Mojang's playerbase server.
+	 */
+	public static final String DEFAULT_BASE_URL = "https://api.mojang.com";
+	
+	/**
+	 * How long a resolved profile is cached by default, in milliseconds.
+	 */
+	public static final long DEFAULT_TTL = 3600000;
+	
+	/**
+	 * How long a userName or UUID Mojang doesn't know is cached by default, in milliseconds.
+	 */
+	public static final long DEFAULT_NEGATIVE_TTL = 300000;
+	
+	/**
+	 * The most lookups cached by default.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+	
+	/**
+	 * How long a request waits to connect, and then to read, in milliseconds.
+	 */
+	public static final int REQUEST_TIMEOUT = 5000;
+	
+	/**
+	 * The most userNames Mojang's playerbase server resolves in a single bulk request.
+	 */
+	public static final int BULK_SIZE = 10;
+	
+	private static final int THREADS = 4;
+	
+	
+	private static volatile String base_url = DEFAULT_BASE_URL;
+	private static volatile long ttl = DEFAULT_TTL;
+	private static volatile long negative_ttl = DEFAULT_NEGATIVE_TTL;
+	private static volatile int cache_size = DEFAULT_CACHE_SIZE;
+	
+	private static LinkedHashMap<String, Cached> cache = new LinkedHashMap<String, Cached>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+		
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest){
+			return size() > cache_size;
+		}
+	
+	};
+	
+	private static ConcurrentHashMap<String, CompletableFuture<Profile>> pending = new ConcurrentHashMap<>();
+	
+	private static ExecutorService executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory(){
+		
+		@Override
+		public Thread newThread(Runnable runnable){
+			Thread thread = new Thread(runnable, "Profile Resolver");
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	
+	});
+	
+	
+	/**
+	 * Resolves the profile of the Player with the given userName.
+	 * 
+	 * @param userName String object containing the userName of the Player. Not case sensitive.
+	 * @return CompletableFuture object that's completed with the Player's profile, or with null if Mojang doesn't 
+	 * know the userName. Completed exceptionally with an IOException when Mojang's server can't be reached.
+	 * @throws IllegalArgumentException When the given userName is null.
+	 */
+	public static CompletableFuture<Profile> resolve(String userName) throws IllegalArgumentException{
+		if (userName == null){
+			throw new IllegalArgumentException("The given userName is null.");
+		}
+		
+		Profile stored = ProfileStore.getProfile(userName);
+		
+		if (stored != null){
+			return CompletableFuture.completedFuture(stored);
+		}
+		
+		
+		return lookup(getUserNameKey(userName), new Callable<Profile>(){
+			
+			@Override
+			public Profile call() throws IOException{
+				String response = request("/users/profiles/minecraft/" + userName, null);
+				
+				if (response == null || getJSONString(response, "id", 0) == null){
+					return null;
+				}
+				
+				return new Profile(getJSONString(response, "name", 0),
+						parseUUID(getJSONString(response, "id", 0)));
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Resolves the profile of the Player with the given UUID.
+	 * 
+	 * @param uuid UUID object containing the UUID of the Player.
+	 * @return CompletableFuture object that's completed with the Player's profile, or with null if Mojang doesn't 
+	 * know the UUID. Completed exceptionally with an IOException when Mojang's server can't be reached.
+	 * @throws IllegalArgumentException When the given UUID is null.
+	 */
+	public static CompletableFuture<Profile> resolve(UUID uuid) throws IllegalArgumentException{
+		if (uuid == null){
+			throw new IllegalArgumentException("The given UUID is null.");
+		}
+		
+		Profile stored = ProfileStore.getProfile(uuid);
+		
+		if (stored != null){
+			return CompletableFuture.completedFuture(stored);
+		}
+		
+		
+		return lookup(getUUIDKey(uuid), new Callable<Profile>(){
+			
+			@Override
+			public Profile call() throws IOException{
+				String response = request("/user/profiles/" + uuid.toString().replace("-", "") + "/names", null);
+				
+				if (response == null){
+					return null;
+				}
+				
+				
+				//The names are listed oldest first:
+				String userName = null;
+				
+				int pos = 0;
+				String name;
+				while ((name = getJSONString(response, "name", pos)) != null){
+					userName = name;
+					pos = response.indexOf("\"name\"", pos) + 6;
+				}
+				
+				return (userName == null) ? null : new Profile(userName, uuid);
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Resolves the profiles of the Players with the given userNames, using as few requests as possible. The 
+	 * userNames that aren't stored or cached are sent to Mojang's bulk endpoint, {@value #BULK_SIZE} at a time, 
+	 * with no more requests at once than the resolver has threads.
+	 * 
+	 * @param userNames Collection containing the userNames of the Players. Not case sensitive.
+	 * @return CompletableFuture object that's completed with the profiles, by the userNames they were asked for. 
+	 * userNames Mojang doesn't know are left out. Completed exceptionally with an IOException when Mojang's server 
+	 * can't be reached.
+	 */
+	public static CompletableFuture<Map<String, Profile>> resolveAll(Collection<String> userNames){
+		ConcurrentHashMap<String, Profile> found = new ConcurrentHashMap<>();
+		LinkedList<CompletableFuture<Void>> requests = new LinkedList<>();
+		
+		LinkedList<String> batch = new LinkedList<>();
+		
+		for (String userName : userNames){
+			Profile stored = ProfileStore.getProfile(userName);
+			
+			if (stored != null){
+				found.put(userName, stored);
+				
+				continue;
+			}
+			
+			Cached cached = getCached(getUserNameKey(userName));
+			
+			if (cached != null){
+				if (cached.profile != null){
+					found.put(userName, cached.profile);
+				}
+				
+				continue;
+			}
+			
+			
+			batch.add(userName);
+			
+			if (batch.size() == BULK_SIZE){
+				requests.add(resolveBatch(batch, found));
+				
+				batch = new LinkedList<>();
+			}
+		}
+		
+		if (!batch.isEmpty()){
+			requests.add(resolveBatch(batch, found));
+		}
+		
+		
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+				.thenApply(new Function<Void, Map<String, Profile>>(){
+			
+			@Override
+			public Map<String, Profile> apply(Void done){
+				return found;
+			}
+		
+		});
+	}
+	
+	
+	/**
+	 * Resolves a single batch of userNames with Mojang's bulk endpoint, on one of the resolver's threads.
+	 * 
+	 * @param batch List containing at most {@value #BULK_SIZE} userNames.
+	 * @param found Map to put the found profiles in, by the userNames they were asked for.
+	 * @return CompletableFuture object that's completed once the batch is resolved.
+	 */
+	private static CompletableFuture<Void> resolveBatch(List<String> batch, Map<String, Profile> found){
+		return CompletableFuture.runAsync(new Runnable(){
+			
+			@Override
+			public void run(){
+				HashMap<String, String> asked = new HashMap<>();
+				StringBuilder body = new StringBuilder("[");
+				
+				for (String userName : batch){
+					asked.put(getUserNameKey(userName), userName);
+					
+					body.append((body.length() == 1) ? "\"" : ",\"").append(userName).append('\"');
+				}
+				
+				body.append(']');
+				
+				
+				String response = null;
+				
+				try{
+					response = request("/profiles/minecraft", body.toString());
+				}
+				catch (IOException e){
+					throw new CompletionException(e);
+				}
+				
+				
+				int start = (response == null) ? -1 : response.indexOf('{');
+				
+				while (start != -1){
+					int end = response.indexOf('}', start);
+					
+					if (end == -1){
+						break;
+					}
+					
+					
+					String object = response.substring(start, end + 1);
+					String id = getJSONString(object, "id", 0);
+					String name = getJSONString(object, "name", 0);
+					
+					if (id != null && name != null){
+						Profile profile = new Profile(name, parseUUID(id));
+						
+						cacheProfile(profile);
+						
+						String userName = asked.remove(getUserNameKey(name));
+						
+						if (userName != null){
+							found.put(userName, profile);
+						}
+					}
+					
+					start = response.indexOf('{', end);
+				}
+				
+				
+				for (String key : asked.keySet()){
+					cache(key, null, negative_ttl);	//Mojang doesn't know it.
+				}
+			}
+		
+		}, executor);
+	}
+	
+	
+	/**
+	 * Gets the cached result of the given lookup, dropping it if it's expired.
+	 * 
+	 * @param key String object containing the key of the lookup.
+	 * @return Cached object containing the result. Null if it isn't cached.
+	 */
+	private static Cached getCached(String key){
+		synchronized (cache){
+			Cached cached = cache.get(key);
+			
+			if (cached != null && System.currentTimeMillis() >= cached.expires){
+				cache.remove(key);
+				
+				return null;
+			}
+			
+			return cached;
+		}
+	}
+	
+	
+	/**
+	 * Gets the cached result of the given lookup, or makes the lookup on one of the resolver's threads. If the 
+	 * same lookup is already being made, that one's shared.
+	 * 
+	 * @param key String object containing the key of the lookup in the cache.
+	 * @param fetch Callable object that makes the lookup.
+	 * @return CompletableFuture object that's completed with the result of the lookup.
+	 */
+	private static CompletableFuture<Profile> lookup(String key, Callable<Profile> fetch){
+		Cached cached = getCached(key);
+		
+		if (cached != null){
+			return CompletableFuture.completedFuture(cached.profile);
+		}
+		
+		
+		CompletableFuture<Profile> future = new CompletableFuture<>();
+		CompletableFuture<Profile> previous = pending.putIfAbsent(key, future);
+		
+		if (previous != null){
+			return previous;
+		}
+		
+		
+		executor.execute(new Runnable(){
+			
+			@Override
+			public void run(){
+				try{
+					Profile profile = fetch.call();
+					
+					if (profile == null){
+						cache(key, null, negative_ttl);
+					}
+					else{
+						cacheProfile(profile);
+					}
+					
+					pending.remove(key);
+					future.complete(profile);
+				}
+				catch (Throwable e){
+					pending.remove(key);
+					future.completeExceptionally(e);
+				}
+			}
+		
+		});
+		
+		
+		return future;
+	}
+	
+	
+	/**
+	 * Caches the given profile, by both its userName and its UUID, as if it was just resolved. The profile is 
+	 * recorded in the {@link ProfileStore} too.
+	 * 
+	 * @param profile Profile object containing the profile to cache.
+	 */
+	static void cacheProfile(Profile profile){
+		cache(getUserNameKey(profile.getUserName()), profile, ttl);
+		cache(getUUIDKey(profile.getUUID()), profile, ttl);
+		
+		ProfileStore.record(profile);
+	}
+	
+	
+	/**
+	 * Caches the result of a lookup.
+	 * 
+	 * @param key String object containing the key of the lookup.
+	 * @param profile Profile object containing the result of the lookup. Null if the lookup found nothing.
+	 * @param time Long representing how long to cache the result for, in milliseconds.
+	 */
+	private static void cache(String key, Profile profile, long time){
+		synchronized (cache){
+			cache.put(key, new Cached(profile, System.currentTimeMillis() + time));
+		}
+	}
+	
+	
+	/**
+	 * Clears the cache, so every lookup after this goes to Mojang's server again.
+	 */
+	public static void clearCache(){
+		synchronized (cache){
+			cache.clear();
+		}
+	}
+	
+	
+	/**
+	 * Makes a request to the playerbase server and reads the response.
+	 * 
+	 * @param path String object containing the path of the request, after the base URL.
+	 * @param body String object containing the JSON to POST. Null to GET instead.
+	 * @return String object containing the response. Null if the server has nothing for the request.
+	 * @throws IOException When the server can't be reached, or answers with an error.
+	 */
+	static String request(String path, String body) throws IOException{
+		HttpURLConnection connection = null;
+		
+		int code;
+		String text = null;
+		
+		try{
+			connection = (HttpURLConnection) new URL(base_url + path).openConnection();
+			connection.setConnectTimeout(REQUEST_TIMEOUT);
+			connection.setReadTimeout(REQUEST_TIMEOUT);
+			
+			if (body != null){
+				connection.setRequestMethod("POST");
+				connection.setRequestProperty("Content-Type", "application/json");
+				connection.setDoOutput(true);
+				
+				try (OutputStream out = connection.getOutputStream()){
+					out.write(body.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			
+			
+			code = connection.getResponseCode();
+			
+			if (code == HttpURLConnection.HTTP_OK){
+				ByteArrayOutputStream response = new ByteArrayOutputStream();
+				
+				try (InputStream in = connection.getInputStream()){
+					byte[] buffer = new byte[4096];
+					
+					int read;
+					while ((read = in.read(buffer)) != -1){
+						response.write(buffer, 0, read);
+					}
+				}
+				
+				text = new String(response.toByteArray(), StandardCharsets.UTF_8).trim();
+			}
+		}
+		catch (IOException e){
+			throw new IOException("An internet connection to the Mojang playerbase server could not be made.", e);
+		}
+		finally{
+			if (connection != null){
+				connection.disconnect();
+			}
+		}
+		
+		
+		if (code == HttpURLConnection.HTTP_NO_CONTENT || code == HttpURLConnection.HTTP_NOT_FOUND){
+			return null;
+		}
+		else if (code != HttpURLConnection.HTTP_OK){
+			throw new IOException("Mojang's playerbase server answered with " + code + ".");
+		}
+		
+		return text.isEmpty() ? null : text;
+	}
+	
+	
+	/**
+	 * Gets the value of the first string field with the given name in the JSON, starting at the given index.
+	 * 
+	 * @param json String object containing the JSON.
+	 * @param field String object containing the name of the field.
+	 * @param from Integer representing the index to start looking from.
+	 * @return String object containing the value of the field. Null if there isn't one.
+	 */
+	static String getJSONString(String json, String field, int from){
+		int pos = json.indexOf("\"" + field + "\"", from);
+		
+		if (pos == -1){
+			return null;
+		}
+		
+		
+		pos = json.indexOf(':', pos + field.length() + 2);
+		
+		if (pos == -1){
+			return null;
+		}
+		
+		int start = json.indexOf('\"', pos) + 1;
+		int end = json.indexOf('\"', start);
+		
+		if (start == 0 || end == -1){
+			return null;
+		}
+		
+		return json.substring(start, end);
+	}
+	
+	
+	/**
+	 * Parses a UUID, with or without its dashes, the way Mojang's servers write them.
+	 * 
+	 * @param uuid String object containing the UUID.
+	 * @return UUID object containing the parsed UUID.
+	 * @throws IllegalArgumentException When the given String object isn't a UUID.
+	 */
+	static UUID parseUUID(String uuid) throws IllegalArgumentException{
+		if (uuid.length() == 32){
+			StringBuilder UUIDString = new StringBuilder(uuid);
+			
+			UUIDString.insert(8, "-");
+			UUIDString.insert(13, "-");
+			UUIDString.insert(18, "-");
+			UUIDString.insert(23, "-");
+			
+			uuid = UUIDString.toString();
+		}
+		
+		return UUID.fromString(uuid);
+	}
+	
+	
+	private static String getUserNameKey(String userName){
+		return "name:" + userName.toLowerCase(Locale.ROOT);
+	}
+	
+	
+	private static String getUUIDKey(UUID uuid){
+		return "uuid:" + uuid;
+	}
+	
+	
+	/**
+	 * Sets the address of the playerbase server, which is {@value #DEFAULT_BASE_URL} unless it's set. Meant for 
+	 * pointing the resolver at a mirror, or at a stand-in while testing.
+	 * 
+	 * @param url String object containing the address, without a trailing "/".
+	 * @throws IllegalArgumentException When the given address is null.
+	 */
+	public static void setBaseURL(String url) throws IllegalArgumentException{
+		if (url == null){
+			throw new IllegalArgumentException("The given URL is null.");
+		}
+		
+		base_url = url;
+	}
+	
+	
+	/**
+	 * Gets the address of the playerbase server.
+	 * 
+	 * @return String object containing the address.
+	 */
+	public static String getBaseURL(){
+		return base_url;
+	}
+	
+	
+	/**
+	 * Sets how long resolved profiles are cached for. Doesn't change what's already cached.
+	 * 
+	 * @param millis Long representing the time, in milliseconds.
+	 * @throws IllegalArgumentException When the given time is less than 0.
+	 */
+	public static void setTTL(long millis) throws IllegalArgumentException{
+		if (millis < 0){
+			throw new IllegalArgumentException("The given TTL is less than 0.");
+		}
+		
+		ttl = millis;
+	}
+	
+	
+	/**
+	 * Gets how long resolved profiles are cached for.
+	 * 
+	 * @return Long representing the time, in milliseconds.
+	 */
+	public static long getTTL(){
+		return ttl;
+	}
+	
+	
+	/**
+	 * Sets how long userNames and UUIDs Mojang doesn't know are cached for. Doesn't change what's already cached.
+	 * 
+	 * @param millis Long representing the time, in milliseconds.
+	 * @throws IllegalArgumentException When the given time is less than 0.
+	 */
+	public static void setNegativeTTL(long millis) throws IllegalArgumentException{
+		if (millis < 0){
+			throw new IllegalArgumentException("The given TTL is less than 0.");
+		}
+		
+		negative_ttl = millis;
+	}
+	
+	
+	/**
+	 * Gets how long userNames and UUIDs Mojang doesn't know are cached for.
+	 * 
+	 * @return Long representing the time, in milliseconds.
+	 */
+	public static long getNegativeTTL(){
+		return negative_ttl;
+	}
+	
+	
+	/**
+	 * Sets the most lookups to cache. Once there are more, the ones used least recently are dropped.
+	 * 
+	 * @param size Integer representing the size of the cache.
+	 * @throws IllegalArgumentException When the given size is less than 1.
+	 */
+	public static void setCacheSize(int size) throws IllegalArgumentException{
+		if (size < 1){
+			throw new IllegalArgumentException("The given size is less than 1.");
+		}
+		
+		cache_size = size;
+	}
+	
+	
+	/**
+	 * Gets the most lookups to cache.
+	 * 
+	 * @return Integer representing the size of the cache.
+	 */
+	public static int getCacheSize(){
+		return cache_size;
+	}
+	
+	
+	/**
+	 * Represents the profile of a Player: its userName and its UUID.
+	 */
+	public static class Profile{
+		private String userName;
+		private UUID uuid;
+		
+		
+		Profile(String userName, UUID uuid){
+			this.userName = userName;
+			this.uuid = uuid;
+		}
+		
+		
+		/**
+		 * Gets the userName of the Player, as Mojang has it.
+		 * 
+		 * @return String object containing the userName.
+		 */
+		public String getUserName(){
+			return userName;
+		}
+		
+		
+		/**
+		 * Gets the UUID of the Player.
+		 * 
+		 * @return UUID object containing the UUID.
+		 */
+		public UUID getUUID(){
+			return uuid;
+		}
+		
+		
+		@Override
+		public String toString(){
+			return userName + " (" + uuid + ")";
+		}
+	}
+	
+	
+	private static class Cached{
+		public Profile profile;
+		public long expires;
+		
+		public Cached(Profile profile, long expires){
+			this.profile = profile;
+			this.expires = expires;
+		}
+	}
+}
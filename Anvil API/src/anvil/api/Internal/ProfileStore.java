@@ -0,0 +1,384 @@
+package anvil.api.Internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Keeps every Player profile Anvil has resolved on disk, so they don't have to be resolved again after the wrapper 
+ * restarts.
+ * <p>
+ * The profiles are kept in a log file that's only ever appended to, one line per change: "uuid|userName|lastSeen". 
+ * A Player changing its userName is just another line, so the store remembers every userName each Player has had. 
+ * The whole log is read into memory when the store is opened, and rewritten without its outdated lines when 
+ * there are too many of them. That's checked when the store is opened, and every time a line is written, so a 
+ * wrapper that runs for months doesn't keep growing the log.
+ * <p>
+ * lastSeen is the last time the profile was resolved, or read out of a server's files. A userName whose profile 
+ * hasn't been seen in {@value #NAME_TRUST_TIME} milliseconds isn't trusted anymore, since Mojang lets other 
+ * Players take old userNames.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see ProfileResolver
+ */
+public class ProfileStore{
+	/**
+	 * How long a userName is trusted after its profile was last seen, in milliseconds.
+	 */
+	public static final long NAME_TRUST_TIME = 30L * 24 * 60 * 60 * 1000;
+	
+	/**
+	 * How long after its profile was last seen seeing it again is written to the log, in milliseconds.
+	 */
+	public static final long SEEN_RESOLUTION = 24 * 60 * 60 * 1000;
+	
+	/**
+	 * How many lines the log can have for each userName it remembers, before it's compacted.
+	 */
+	public static final int COMPACT_RATIO = 2;
+	
+	private static final int COMPACT_MINIMUM = 1024;
+	
+	
+	private static File file;
+	private static BufferedWriter log;
+	private static long log_lines = 0;
+	private static long records = 0;
+	
+	private static ConcurrentHashMap<UUID, Record[]> byUUID = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, UUID> byUserName = new ConcurrentHashMap<>();
+	
+	
+	/**
+	 * Opens the store in the given file, reading every profile in it. The file is made if it doesn't exist. If 
+	 * the store was already open, it's closed first.
+	 * 
+	 * @param file File object containing the log file of the store.
+	 * @throws IOException When the file can't be read or written.
+	 * @throws IllegalArgumentException When the given File object is null.
+	 */
+	public static synchronized void open(File file) throws IOException, IllegalArgumentException{
+		if (file == null){
+			throw new IllegalArgumentException("The given File object is null.");
+		}
+		
+		
+		close();
+		
+		byUUID.clear();
+		byUserName.clear();
+		log_lines = 0;
+		records = 0;
+		
+		
+		if (file.exists()){
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+					StandardCharsets.UTF_8))){
+				
+				String line;
+				while ((line = reader.readLine()) != null){
+					++log_lines;
+					
+					String[] fields = line.split("\\|");
+					
+					if (fields.length != 3){
+						continue;	//Probably cut off by a crash.
+					}
+					
+					
+					try{
+						apply(UUID.fromString(fields[0]), fields[1], Long.parseLong(fields[2]));
+					}
+					catch (IllegalArgumentException e){
+						//Same as above.
+					}
+				}
+			}
+		}
+		
+		
+		ProfileStore.file = file;
+		
+		if (log_lines > COMPACT_MINIMUM && log_lines > COMPACT_RATIO * records){
+			compact();
+		}
+		else{
+			openLog();
+		}
+	}
+	
+	
+	/**
+	 * Closes the store. Profiles are still remembered until it's opened again, but nothing else is written.
+	 */
+	public static synchronized void close(){
+		if (log != null){
+			try{
+				log.close();
+			}
+			catch (IOException e){
+				//Every line was already flushed.
+			}
+			
+			log = null;
+		}
+	}
+	
+	
+	/**
+	 * Gets the profile with the given userName, if it has been seen recently enough to be trusted.
+	 * 
+	 * @param userName String object containing the userName. Not case sensitive.
+	 * @return Profile object containing the profile. Null if the store doesn't have it, or doesn't trust it.
+	 */
+	public static ProfileResolver.Profile getProfile(String userName){
+		if (userName == null){
+			return null;
+		}
+		
+		
+		UUID uuid = byUserName.get(userName.toLowerCase(Locale.ROOT));
+		
+		if (uuid == null){
+			return null;
+		}
+		
+		Record current = getCurrent(uuid);
+		
+		if (current == null || !current.userName.equalsIgnoreCase(userName)
+				|| System.currentTimeMillis() - current.lastSeen > NAME_TRUST_TIME){
+			
+			return null;
+		}
+		
+		
+		return new ProfileResolver.Profile(current.userName, uuid);
+	}
+	
+	
+	/**
+	 * Gets the profile with the given UUID.
+	 * 
+	 * @param uuid UUID object containing the UUID.
+	 * @return Profile object containing the profile, with the last userName the store saw. Null if the store 
+	 * doesn't have it.
+	 */
+	public static ProfileResolver.Profile getProfile(UUID uuid){
+		if (uuid == null){
+			return null;
+		}
+		
+		
+		Record current = getCurrent(uuid);
+		
+		return (current == null) ? null : new ProfileResolver.Profile(current.userName, uuid);
+	}
+	
+	
+	/**
+	 * Gets every userName the Player with the given UUID has had, as far as the store knows.
+	 * 
+	 * @param uuid UUID object containing the UUID of the Player.
+	 * @return String array containing the userNames, oldest first. Empty if the store doesn't have the Player.
+	 */
+	public static String[] getUserNameHistory(UUID uuid){
+		Record[] history = (uuid == null) ? null : byUUID.get(uuid);
+		
+		if (history == null){
+			return new String[0];
+		}
+		
+		
+		String[] userNames = new String[history.length];
+		
+		for (int i = 0; i < history.length; ++i){
+			userNames[i] = history[i].userName;
+		}
+		
+		return userNames;
+	}
+	
+	
+	/**
+	 * Remembers that the given profile was just seen. Only written to the log if it's new, its userName changed, 
+	 * or it hasn't been seen in {@value #SEEN_RESOLUTION} milliseconds. If that leaves the log with too many 
+	 * outdated lines, it's compacted right away, while still holding the store's lock.
+	 * 
+	 * @param profile Profile object containing the profile.
+	 */
+	public static void record(ProfileResolver.Profile profile){
+		if (profile == null || profile.getUUID() == null){
+			return;
+		}
+		
+		
+		long now = System.currentTimeMillis();
+		
+		Record current = getCurrent(profile.getUUID());
+		
+		if (current != null && current.userName.equals(profile.getUserName())
+				&& now - current.lastSeen < SEEN_RESOLUTION){
+			
+			return;	//Nothing worth writing, which is almost always the case.
+		}
+		
+		
+		synchronized (ProfileStore.class){
+			apply(profile.getUUID(), profile.getUserName(), now);
+			
+			if (log == null){
+				return;
+			}
+			
+			
+			try{
+				log.write(profile.getUUID() + "|" + profile.getUserName() + "|" + now);
+				log.newLine();
+				log.flush();
+				
+				++log_lines;
+				
+				if (log_lines > COMPACT_MINIMUM && log_lines > COMPACT_RATIO * records){
+					close();	//The compacted log is moved over this one.
+					compact();
+				}
+			}
+			catch (IOException e){
+				close();	//Better to forget the profiles than to keep failing.
+			}
+		}
+	}
+	
+	
+	/**
+	 * Applies a line of the log to the profiles in memory.
+	 * 
+	 * @param uuid UUID object containing the UUID of the profile.
+	 * @param userName String object containing the userName of the profile.
+	 * @param lastSeen Long representing when the profile was seen, in milliseconds since the epoch.
+	 */
+	private static void apply(UUID uuid, String userName, long lastSeen){
+		Record[] history = byUUID.get(uuid);
+		Record[] updated = null;
+		
+		if (history == null){
+			updated = new Record[] {new Record(userName, lastSeen)};
+			
+			++records;
+		}
+		else if (history[history.length - 1].userName.equals(userName)){
+			long seen = Math.max(lastSeen, history[history.length - 1].lastSeen);
+			
+			updated = history.clone();
+			updated[updated.length - 1] = new Record(userName, seen);
+		}
+		else{
+			updated = new Record[history.length + 1];
+			System.arraycopy(history, 0, updated, 0, history.length);
+			updated[history.length] = new Record(userName, lastSeen);
+			
+			++records;
+			
+			//The old userName isn't this Player's anymore:
+			byUserName.remove(history[history.length - 1].userName.toLowerCase(Locale.ROOT), uuid);
+		}
+		
+		
+		byUUID.put(uuid, updated);
+		byUserName.put(userName.toLowerCase(Locale.ROOT), uuid);
+	}
+	
+	
+	/**
+	 * Rewrites the log with only the lines it needs, then keeps appending to the new one. The new log is written 
+	 * next to the old one and moved over it, so a crash can't lose the store.
+	 * 
+	 * @throws IOException When the new log can't be written.
+	 */
+	private static void compact() throws IOException{
+		File compacted = new File(file.getPath() + ".compact");
+		
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(compacted),
+				StandardCharsets.UTF_8))){
+			
+			for (UUID uuid : byUUID.keySet()){
+				for (Record record : byUUID.get(uuid)){
+					writer.write(uuid + "|" + record.userName + "|" + record.lastSeen);
+					writer.newLine();
+				}
+			}
+		}
+		
+		Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		
+		log_lines = records;
+		
+		
+		openLog();
+	}
+	
+	
+	/**
+	 * Opens the log for appending. If the last line was cut off, it's ended first, so the next line isn't added to 
+	 * it.
+	 * 
+	 * @throws IOException When the log can't be opened.
+	 */
+	private static void openLog() throws IOException{
+		boolean cut_off = false;
+		
+		if (file.length() > 0){
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")){
+				raf.seek(file.length() - 1);
+				
+				cut_off = raf.read() != '\n';
+			}
+		}
+		
+		
+		log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		
+		if (cut_off){
+			log.newLine();
+			log.flush();
+		}
+	}
+	
+	
+	private static Record getCurrent(UUID uuid){
+		Record[] history = byUUID.get(uuid);
+		
+		return (history == null) ? null : history[history.length - 1];
+	}
+	
+	
+	/**
+	 * A userName a Player has had, and the last time it was seen with it. Never changed once made, so the 
+	 * profiles can be read without locking.
+	 */
+	private static class Record{
+		public final String userName;
+		public final long lastSeen;
+		
+		public Record(String userName, long lastSeen){
+			this.userName = userName;
+			this.lastSeen = lastSeen;
+		}
+	}
+}
@@ -4,13 +4,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Scanner;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import anvil.api.PlugIn;
 import anvil.api.ServerOutputLine.ServerOutputLine;
+import anvil.api.ServerOutputLine.ServerOutputLineType;
 
 
 /**
@@ -31,13 +35,34 @@ public class Runner{
 	private boolean isJar;
 	
 	private Process process;
-	private Scanner in;
+	private ServerOutputReader in;
 	private PrintWriter out;
 	
 	private Thread outputLine_interpreter;
-	private BlockingQueue<ServerOutputLine> outputLines = new LinkedBlockingQueue<>();
+	private OutputLineQueue outputLines;
+	private OutputLineBus outputBus = new OutputLineBus(OutputLineBus.DEFAULT_CAPACITY);
+	
+	/**
+	 * The default capacity of the output queue of every Runner.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 16384;
+	
+	/**
+	 * The default OverflowPolicy of the output queue of every Runner.
+	 */
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_GENERIC;
+	
+	private int classificationThreads = 1;
+	private ThreadPoolExecutor classifiers;
+	private HashMap<Long, ServerOutputLine> reorder_buffer = new HashMap<>();
+	private long next_delivery = 0;
+	private boolean delivering = false;
+	private volatile boolean delivery_stopped = false;
+	
+	private static final int LINES_PER_CLASSIFIER = 256;
 	
 	private boolean started = false;
+	private volatile boolean lazyClassification = false;
 	
 	private String tag;
 	
@@ -74,6 +99,8 @@ public class Runner{
 		
 		
 		this.tag = tag;
+		
+		outputLines = new OutputLineQueue(DEFAULT_QUEUE_CAPACITY, DEFAULT_OVERFLOW_POLICY, tag);
 	}
 	
 	
@@ -106,6 +133,8 @@ public class Runner{
 		
 		
 		this.tag = tag;
+		
+		outputLines = new OutputLineQueue(DEFAULT_QUEUE_CAPACITY, DEFAULT_OVERFLOW_POLICY, tag);
 	}
 	
 	
@@ -147,7 +176,7 @@ public class Runner{
 				process = pb.start();
 				
 				//oof = process.getInputStream();
-				in = new Scanner(process.getInputStream());
+				in = new ServerOutputReader(process.getInputStream());
 				out = new PrintWriter(process.getOutputStream());
 				
 				
@@ -168,18 +197,81 @@ public class Runner{
 			
 			process = pb.start();
 			
-			in = new Scanner(process.getInputStream());
+			in = new ServerOutputReader(process.getInputStream());
 			out = new PrintWriter(process.getOutputStream());
 		}
 		
 		
+		synchronized (reorder_buffer){
+			reorder_buffer.clear();
+			next_delivery = 0;
+			delivering = false;
+			delivery_stopped = false;
+		}
+		
+		if (classificationThreads > 1){
+			classifiers = new ThreadPoolExecutor(classificationThreads, classificationThreads, 0,
+					TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(classificationThreads *
+					LINES_PER_CLASSIFIER), new ThreadFactory(){
+				
+				private int count = 0;
+				
+				
+				@Override
+				public synchronized Thread newThread(Runnable r){
+					Thread thread = new Thread(r, tag + " classifier " + count++);
+					thread.setDaemon(true);
+					
+					return thread;
+				}
+			}, new ThreadPoolExecutor.CallerRunsPolicy());	//A full pool makes the reader help out.
+		}
+		
+		
 		outputLine_interpreter = new Thread(){	//This will kill itself cleanly when the server is dead.
 			
 			@Override
 			public void run(){
-				while (in.hasNext()){
-					String line = in.nextLine();
-					outputLines.add(new ServerOutputLine(line));
+				try{
+					if (classifiers == null){
+						String line;
+						while ((line = in.readLine()) != null){
+							ServerOutputLine output = makeLine(line, lazyClassification);
+							
+							outputBus.publish(output);
+							outputLines.put(output);
+						}
+					}
+					else{
+						long sequence = 0;
+						
+						String line;
+						while (!delivery_stopped && (line = in.readLine()) != null){
+							final String read_line = line;
+							final long line_sequence = sequence++;
+							final boolean lazy = lazyClassification;
+							
+							classifiers.execute(new Runnable(){
+								
+								@Override
+								public void run(){
+									deliver(line_sequence, makeLine(read_line, lazy));
+								}
+							});
+						}
+					}
+				}
+				catch (IOException e){
+					//The server's output was closed out from under us, same as the server ending.
+				}
+				catch (InterruptedException e){
+					//Interrupted while waiting for room in the queue, stop reading.
+					outputLines.addDropped(1);	//The line was published, but never made it to the queue.
+				}
+				finally{
+					if (classifiers != null){
+						classifiers.shutdown();
+					}
 				}
 			}
 		};
@@ -193,6 +285,136 @@ public class Runner{
 	}
 	
 	
+	/**
+	 * Makes a ServerOutputLine out of a line the server wrote. If classifying the line fails, it's made generic 
+	 * instead, so the line still makes it to the queue.
+	 * 
+	 * @param line String object containing the line the server wrote.
+	 * @param lazy Boolean representing whether or not to classify the line lazily.
+	 * @return ServerOutputLine object containing the line.
+	 */
+	private static ServerOutputLine makeLine(String line, boolean lazy){
+		try{
+			return new ServerOutputLine(line, lazy);
+		}
+		catch (Throwable e){	//A catastrophic acceptedFormat can overflow the stack.
+			return new ServerOutputLine(line, (ServerOutputLineType)null);
+		}
+	}
+	
+	
+	/**
+	 * Delivers a classified output line to the queue, in the order the server wrote it. Lines that are 
+	 * classified before the lines ahead of them wait in the reorder buffer until those are delivered.
+	 * <p>
+	 * Only one thread delivers at a time. It takes every line that's ready out of the reorder buffer, then puts 
+	 * them in the queue without holding the buffer's lock, so a put waiting for room never holds up the other 
+	 * classifiers. They just leave their lines in the buffer for the delivering thread, unless the lines ready 
+	 * to go already fill it, in which case they wait for the delivering thread to catch up.
+	 * <p>
+	 * If the delivering thread is interrupted while waiting for room in the queue, delivering stops for good, the 
+	 * same as the reader stopping when it's interrupted without classifiers. Every line that doesn't make it to 
+	 * the queue is counted as dropped.
+	 * 
+	 * @param sequence Long representing where the line was in the server's output, starting at 0.
+	 * @param line ServerOutputLine object containing the classified line.
+	 */
+	private void deliver(long sequence, ServerOutputLine line){
+		synchronized (reorder_buffer){
+			if (delivery_stopped){
+				outputLines.addDropped(1);
+				
+				return;
+			}
+			
+			reorder_buffer.put(sequence, line);
+			
+			if (delivering){
+				//Waiting on a gap would wait forever, only wait on a full queue:
+				while (delivering && reorder_buffer.containsKey(next_delivery) &&
+						reorder_buffer.size() > classificationThreads * LINES_PER_CLASSIFIER){
+					
+					try{
+						reorder_buffer.wait();
+					}
+					catch (InterruptedException e){
+						Thread.currentThread().interrupt();
+						
+						break;
+					}
+				}
+				
+				return;
+			}
+			
+			delivering = true;
+		}
+		
+		
+		LinkedList<ServerOutputLine> ready = new LinkedList<>();
+		
+		while (true){
+			synchronized (reorder_buffer){
+				ServerOutputLine next;
+				while ((next = reorder_buffer.remove(next_delivery)) != null){
+					ready.add(next);
+					
+					++next_delivery;
+				}
+				
+				if (ready.isEmpty()){
+					delivering = false;
+					
+					return;
+				}
+				
+				reorder_buffer.notifyAll();
+			}
+			
+			
+			while (!ready.isEmpty()){
+				ServerOutputLine next = ready.peekFirst();
+				
+				outputBus.publish(next);
+				
+				try{
+					outputLines.put(next);
+				}
+				catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+					
+					stopDelivering(ready.size());	//Including this one, it was published but never queued.
+					
+					return;
+				}
+				
+				ready.removeFirst();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Stops delivering output lines to the queue, counting every line that won't make it there as dropped. The 
+	 * reader stops reading once it notices.
+	 * 
+	 * @param lost Long representing the number of lines the delivering thread was holding on to.
+	 */
+	private void stopDelivering(long lost){
+		synchronized (reorder_buffer){
+			delivery_stopped = true;
+			
+			lost += reorder_buffer.size();
+			reorder_buffer.clear();
+			
+			delivering = false;
+			reorder_buffer.notifyAll();
+		}
+		
+		outputLines.addDropped(lost);
+	}
+	
+	
 	/**
 	 * Stops this Runner object gracefully (allows the server thread to end itself).
 	 * <p>
@@ -368,6 +590,182 @@ public class Runner{
 	}
 	
 	
+	/**
+	 * Gets a batch of output lines from the server's queue, in the order the server wrote them.
+	 * <p>
+	 * Like {@link #getNextOutputLine()}, this method waits indefinitely for the first line. After that, it keeps 
+	 * taking lines until it has the given number of them, or the given time has passed since the first line 
+	 * showed up. Taking lines a batch at a time means a lot less waiting on the queue when the server is busy, 
+	 * while a quiet server still gets its lines out in time.
+	 * 
+	 * @param max Integer representing the most output lines to get.
+	 * @param timeoutMillis Long representing how long to wait for more lines after the first, in milliseconds.
+	 * @return LinkedList object containing the output lines, at least 1. Null if the current thread is 
+	 * interrupted.
+	 * @throws IllegalArgumentException When the max is less than 1.
+	 * 
+	 * @see ServerOutputLine
+	 */
+	public LinkedList<ServerOutputLine> getNextOutputLines(int max, long timeoutMillis)
+			throws IllegalArgumentException{
+		
+		if (max < 1){
+			throw new IllegalArgumentException("The given max is less than 1.");
+		}
+		
+		
+		LinkedList<ServerOutputLine> batch = new LinkedList<>();
+		
+		try{
+			outputLines.drainTo(batch, max, timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e){
+			return null;
+		}
+		
+		
+		return batch;
+	}
+	
+	
+	/**
+	 * Sets whether or not this Runner classifies its output lines lazily.
+	 * <p>
+	 * Normally, the thread reading the server's output classifies every line before queueing it. With a lot of 
+	 * known ServerOutputLineTypes, that thread can fall behind the server, and a server that can't write its 
+	 * output stalls. When lazy, that thread only queues the raw lines, and each line is classified the first 
+	 * time its information is used, see {@link ServerOutputLine#ServerOutputLine(String, boolean)}.
+	 * <p>
+	 * Only affects lines read after this is called.
+	 * 
+	 * @param lazy Boolean representing whether or not to classify output lines lazily.
+	 */
+	public void setLazyClassification(boolean lazy){
+		lazyClassification = lazy;
+	}
+	
+	
+	/**
+	 * Sets how many threads this Runner uses to classify its output lines. Must be set before 
+	 * {@link #start()}.
+	 * <p>
+	 * With 1 thread, the thread reading the server's output classifies each line itself. With more, that thread 
+	 * only reads, and the lines are classified by a pool of that many threads. They're still put in the queue 
+	 * in the order the server wrote them, so {@link #getNextOutputLine()} acts the same either way. Servers that 
+	 * write thousands of lines at once (like modded servers starting up) benefit the most.
+	 * 
+	 * @param threads Integer representing the number of threads to classify with.
+	 * @return Whether or not the number was set. False if this Runner was already started.
+	 * @throws IllegalArgumentException When the given number of threads is less than 1.
+	 */
+	public boolean setClassificationThreads(int threads) throws IllegalArgumentException{
+		if (threads < 1){
+			throw new IllegalArgumentException("The given number of threads is less than 1.");
+		}
+		
+		if (started){
+			return false;
+		}
+		
+		
+		classificationThreads = threads;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Gets how many threads this Runner uses to classify its output lines.
+	 * 
+	 * @return Integer representing the number of threads this Runner classifies with.
+	 * 
+	 * @see #setClassificationThreads(int)
+	 */
+	public int getClassificationThreads(){
+		return classificationThreads;
+	}
+	
+	
+	/**
+	 * Gets whether or not this Runner classifies its output lines lazily.
+	 * 
+	 * @return Whether or not this Runner classifies its output lines lazily.
+	 * 
+	 * @see #setLazyClassification(boolean)
+	 */
+	public boolean isLazyClassification(){
+		return lazyClassification;
+	}
+	
+	
+	/**
+	 * Sets the capacity and OverflowPolicy of this Runner's output queue. Can be changed at any time.
+	 * <p>
+	 * The output queue holds the lines that have been read from the server, but not yet taken with 
+	 * {@link #getNextOutputLine()}. Once it holds the capacity's worth of lines, the OverflowPolicy decides what 
+	 * happens to the next one. This keeps a server that spams its log, or PlugIns that can't keep up, from using 
+	 * up all of the wrapper's memory. The default is {@value #DEFAULT_QUEUE_CAPACITY} lines, dropping generic 
+	 * lines first.
+	 * 
+	 * @param capacity Integer representing the maximum number of lines to hold in memory.
+	 * @param policy The OverflowPolicy enumeration that decides what happens to lines that don't fit.
+	 * @throws IllegalArgumentException When the capacity is less than 1, or the policy is null.
+	 * 
+	 * @see OverflowPolicy
+	 */
+	public void setOutputQueue(int capacity, OverflowPolicy policy) throws IllegalArgumentException{
+		outputLines.setLimits(capacity, policy);
+	}
+	
+	
+	/**
+	 * Gets how many lines are waiting in this Runner's output queue, including any spilled to disk.
+	 * 
+	 * @return Long representing the depth of the output queue.
+	 */
+	public long getOutputQueueDepth(){
+		return outputLines.size();
+	}
+	
+	
+	/**
+	 * Gets the most lines that have ever been waiting in this Runner's output queue at once.
+	 * 
+	 * @return Long representing the high-water mark of the output queue.
+	 */
+	public long getOutputQueueHighWaterMark(){
+		return outputLines.getHighWaterMark();
+	}
+	
+	
+	/**
+	 * Gets how many lines this Runner's output queue has dropped because of its OverflowPolicy, or because the 
+	 * thread putting them in the queue was interrupted.
+	 * 
+	 * @return Long representing the number of dropped lines.
+	 */
+	public long getDroppedOutputLines(){
+		return outputLines.getDroppedCount();
+	}
+	
+	
+	/**
+	 * Subscribes to this Runner's output lines.
+	 * <p>
+	 * {@link #getNextOutputLine()} takes each line away from everyone else, so only 1 thread can ever see a 
+	 * given line that way. A subscription sees every line this Runner reads from now on, no matter how many other 
+	 * subscriptions and threads are reading them too. This Runner never waits on a subscription. One that falls 
+	 * more than a few thousand lines behind skips ahead and is marked as slow, see {@link OutputSubscription}.
+	 * 
+	 * @return OutputSubscription object containing the new subscription.
+	 * 
+	 * @see OutputSubscription
+	 */
+	public OutputSubscription subscribeToOutput(){
+		return outputBus.subscribe();
+	}
+	
+	
 	/**
 	 * Writes a message to the server. The given String is written as-is to the server.
 	 * 
@@ -388,11 +786,11 @@ public class Runner{
 	
 	
 	/**
-	 * Gets the output of the inner server as a Scanner object.
+	 * Gets the output of the inner server as a ServerOutputReader object.
 	 * 
-	 * @return Scanner object containing the output of the server.
+	 * @return ServerOutputReader object containing the output of the server.
 	 */
-	Scanner getOutputScanner(){
+	ServerOutputReader getOutputReader(){
 		return in;
 	}
 	
@@ -447,7 +845,7 @@ public class Runner{
 	public boolean sendToOps(String message){
 		if (out != null){
 			
-			Player[] operators = Player.getOppedPlayers(tag);
+			Player[] operators = Player.getOppedSnapshot(tag);	//Not a copy, the ops are only read.
 			
 			for (int i = 0; i < operators.length; ++i){
 				out.println("tellraw " + operators[i].getUserName() + " {\"text\":\"" + message + "\"}");
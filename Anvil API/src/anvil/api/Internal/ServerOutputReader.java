@@ -0,0 +1,195 @@
+package anvil.api.Internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Represents the reader of a server's output, one line at a time.
+ * <p>
+ * Scanner objects run a regex for every line, lock on every call, and make a few objects per line along the 
+ * way. A ServerOutputReader reads the server's output in large blocks into a single ByteBuffer that it keeps 
+ * reusing, finds the newlines in the raw bytes, and only makes a String once per line. Minecraft servers write 
+ * almost nothing but ASCII, so lines that are all ASCII skip the charset decoder altogether.
+ * <p>
+ * Lines end with "\n" or "\r\n". The buffer grows to fit any line longer than it, and the last line doesn't 
+ * need a newline at all.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see Runner
+ */
+class ServerOutputReader{
+	private static final int DEFAULT_CAPACITY = 8192;
+	
+	
+	private InputStream in;
+	private Charset charset;
+	
+	private ByteBuffer buffer;
+	
+	private int scanned;
+	private boolean ascii = true;
+	private boolean ended = false;
+	
+	
+	/**
+	 * Constructs a ServerOutputReader object that reads the given stream with the platform's default charset, 
+	 * the same as a Scanner would.
+	 * 
+	 * @param in InputStream object containing the output of the server.
+	 */
+	ServerOutputReader(InputStream in){
+		this(in, Charset.defaultCharset());
+	}
+	
+	
+	/**
+	 * Constructs a ServerOutputReader object that reads the given stream with the given charset.
+	 * 
+	 * @param in InputStream object containing the output of the server.
+	 * @param charset Charset object containing the charset the server writes its output in.
+	 */
+	ServerOutputReader(InputStream in, Charset charset){
+		if (in == null){
+			throw new IllegalArgumentException("The given InputStream object is null.");
+		}
+		
+		this.in = in;
+		this.charset = charset;
+		
+		buffer = ByteBuffer.allocate(DEFAULT_CAPACITY);
+		buffer.limit(0);
+		
+		scanned = 0;
+	}
+	
+	
+	/**
+	 * Reads the next line of the server's output, without its line ending. Blocks until a whole line is 
+	 * available.
+	 * 
+	 * @return String object containing the next line. Null if the server's output has ended.
+	 * @throws IOException When reading the server's output fails.
+	 */
+	String readLine() throws IOException{
+		byte[] bytes = buffer.array();
+		
+		while (true){
+			int limit = buffer.limit();
+			
+			for (int i = scanned; i < limit; ++i){
+				byte b = bytes[i];
+				
+				if (b == '\n'){
+					int start = buffer.position();
+					int end = i;
+					
+					if (end > start && bytes[end - 1] == '\r'){
+						--end;
+					}
+					
+					String line = decode(bytes, start, end - start);
+					
+					buffer.position(i + 1);
+					scanned = i + 1;
+					ascii = true;
+					
+					return line;
+				}
+				else if (b < 0){
+					ascii = false;
+				}
+			}
+			
+			scanned = limit;
+			
+			
+			if (ended || !fill()){
+				ended = true;
+				
+				if (!buffer.hasRemaining()){
+					return null;
+				}
+				
+				
+				//The last line didn't end with a newline:
+				String line = decode(buffer.array(), buffer.position(), buffer.remaining());
+				
+				buffer.position(buffer.limit());
+				ascii = true;
+				
+				return line;
+			}
+			
+			bytes = buffer.array();
+		}
+	}
+	
+	
+	/**
+	 * Reads more of the server's output into the buffer. Moves the unread part of the line to the front of the 
+	 * buffer first, and doubles the buffer if the line already fills it.
+	 * 
+	 * @return Whether or not anything was read. False if the server's output has ended.
+	 * @throws IOException When reading the server's output fails.
+	 */
+	private boolean fill() throws IOException{
+		int offset = buffer.position();
+		
+		buffer.compact();	//Now in write mode, with the unread bytes at the front.
+		scanned -= offset;
+		
+		if (!buffer.hasRemaining()){
+			ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+			
+			buffer.flip();
+			bigger.put(buffer);
+			
+			buffer = bigger;
+		}
+		
+		
+		int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+		
+		if (read > 0){
+			buffer.position(buffer.position() + read);
+		}
+		
+		buffer.flip();	//Back in read mode.
+		
+		return read != -1;
+	}
+	
+	
+	/**
+	 * Makes a String object out of the given bytes of the buffer. ASCII bytes are copied straight over.
+	 * 
+	 * @param bytes Byte array containing the bytes of the buffer.
+	 * @param offset Integer representing the index of the first byte.
+	 * @param length Integer representing the number of bytes.
+	 * @return String object containing the decoded bytes.
+	 */
+	private String decode(byte[] bytes, int offset, int length){
+		if (ascii){
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+		else{
+			return new String(bytes, offset, length, charset);
+		}
+	}
+	
+	
+	/**
+	 * Closes the server's output stream.
+	 * 
+	 * @throws IOException When closing the stream fails.
+	 */
+	void close() throws IOException{
+		in.close();
+	}
+}
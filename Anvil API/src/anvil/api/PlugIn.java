@@ -1,8 +1,11 @@
 package anvil.api;
 
+import java.util.List;
+
 import anvil.api.Internal.Runner;
 import anvil.api.ServerOutputLine.Defaults;
 import anvil.api.ServerOutputLine.ServerOutputLine;
+import anvil.api.ServerOutputLine.ServerOutputLineType;
 
 
 /**
@@ -18,9 +21,12 @@ import anvil.api.ServerOutputLine.ServerOutputLine;
  * When implementing the PlugIn interface, it's very important to not make the class abstract, other-wise Anvil 
  * can't properly load the PlugIn, and it will be ignored.
  * <p>
- * Every method is run on a separate thread. This means that even if a method is already running, another method 
- * could be invoked (including the same method that's already running). This means that all PlugIns should make 
- * their data thread safe.
+ * Every PlugIn gets its own mailbox: a single thread that runs its methods one at a time, in the order they 
+ * happened, so no two of them ever run at once. Output lines arrive in the order the server wrote them, and 
+ * never before or after the lifecycle methods they came before or after. The mailbox only holds so many output 
+ * lines, so a PlugIn that can't keep up loses some of them. Only {@link #onShutDown()} skips ahead of the output 
+ * lines waiting in the mailbox, and a PlugIn that's unloaded doesn't get the ones still waiting. The mailbox's 
+ * thread isn't Anvil's, so data shared with other threads the PlugIn makes should still be thread safe.
  * 
  * @author Garrett Stonis
  * @version 1.0
@@ -45,8 +51,8 @@ public interface PlugIn{
 	 * {@link PlugIn} method, this method will be called. It will not be called if this method also throws an 
 	 * unhandeled throwable, so don't worry about those kinds of loops.
 	 * <p>
-	 * Once this method is called on a separate thread, Anvil will no longer interact with the PlugIn until it 
-	 * [Anvil] is restarted.
+	 * This method is run on a separate thread, outside of the PlugIn's mailbox. Once it's called, Anvil will no 
+	 * longer interact with the PlugIn until it [Anvil] is restarted.
 	 * <p>
 	 * Any other currently running methods of this PlugIn will continue to run until they exit.
 	 * 
@@ -98,6 +104,78 @@ public interface PlugIn{
 	 * @see ServerOutputLine
 	 */
 	public abstract void interpretServerOutputLine(String tag, ServerOutputLine outputLine);
+	
+	
+	/**
+	 * Interprets a batch of output lines from the given Runner, in the order the server wrote them. This is the 
+	 * method Anvil actually calls: it drains the Runner's output a batch at a time, and passes each PlugIn only 
+	 * the lines of the batch it wants, in a single call.
+	 * <p>
+	 * By default, each line is passed to {@link #interpretServerOutputLine(String, ServerOutputLine)} one at a 
+	 * time. PlugIns that go through every output line can override this to handle the whole batch at once. 
+	 * The batch is timed as a single call, so a long batch counts against the PlugIn's time budget all at once.
+	 * 
+	 * @param tag The tag of the Runner the output lines came from.
+	 * @param outputLines List of the ServerOutputLines to interpret.
+	 * 
+	 * @see #interpretServerOutputLine(String, ServerOutputLine)
+	 */
+	public default void interpretServerOutputLines(String tag, List<ServerOutputLine> outputLines){
+		for (ServerOutputLine outputLine : outputLines){
+			interpretServerOutputLine(tag, outputLine);
+		}
+	}
+	
+	
+	/**
+	 * Gets the ServerOutputLineTypes this PlugIn wants to interpret. Only output lines of these types are passed 
+	 * to {@link #interpretServerOutputLine(String, ServerOutputLine)}, the rest skip this PlugIn entirely.
+	 * <p>
+	 * Only asked once, when the PlugIn is loaded. By default, every output line is interpreted, generic ones 
+	 * included.
+	 * 
+	 * @return ServerOutputLineType array containing the types to interpret. Null to interpret every output line.
+	 * 
+	 * @see #isInterpreted(String, ServerOutputLine)
+	 */
+	public default ServerOutputLineType[] getInterpretedTypes(){
+		return null;
+	}
+	
+	
+	/**
+	 * Tells whether or not this PlugIn wants to interpret the given output line. Asked for every output line 
+	 * that gets past {@link #getInterpretedTypes()}, right before it would be passed to 
+	 * {@link #interpretServerOutputLine(String, ServerOutputLine)}.
+	 * <p>
+	 * Unlike every other method, this one is run on Anvil's own thread, so keep it quick. Throwing anything here 
+	 * is treated the same as throwing it anywhere else. By default, every output line is interpreted.
+	 * 
+	 * @param tag The tag of the Runner the output line came from.
+	 * @param outputLine The ServerOutputLine that would be interpreted.
+	 * @return Whether or not to interpret the output line.
+	 */
+	public default boolean isInterpreted(String tag, ServerOutputLine outputLine){
+		return true;
+	}
+	
+	
+	/**
+	 * Gets the PlugIns this PlugIn depends on, by the names of their classes (the classes implementing this 
+	 * interface). Only asked once, when the PlugIn is loaded.
+	 * <p>
+	 * Each of {@link #onLoad()}, {@link #onServerStart(String)}, {@link #onServerStop(String)}, and 
+	 * {@link #onShutDown()} is run in every PlugIn at once, except that a PlugIn's method only starts after 
+	 * the same method is done in every PlugIn it depends on. {@link #onServerStop(String)} and 
+	 * {@link #onShutDown()} go the other way: a PlugIn's method only starts after the same method is done in 
+	 * every PlugIn that depends on it. Dependencies that aren't loaded are ignored. By default, this PlugIn 
+	 * depends on nothing.
+	 * 
+	 * @return String array containing the class names of the PlugIns this PlugIn depends on.
+	 */
+	public default String[] getDependencies(){
+		return new String[0];
+	}
 }
 
 
@@ -1,5 +1,7 @@
 package anvil.api.ServerOutputLine;
 
+import java.util.regex.Pattern;
+
 import anvil.api.Internal.Player;
 
 
@@ -1401,6 +1403,7 @@ public enum Defaults implements ServerOutputLineType{
 	
 	
 	private String acceptedFormat;
+	private Pattern acceptedPattern;
 	
 	private int causeUserIndex;
 	private int recipientIndex;
@@ -1420,6 +1423,7 @@ public enum Defaults implements ServerOutputLineType{
 	 */
 	private Defaults(String acceptedFormatString, int causeUserIndex, int recipientIndex, int subContentsIndex){
 		this.acceptedFormat = acceptedFormatString;
+		this.acceptedPattern = Pattern.compile(acceptedFormatString);
 		this.causeUserIndex = causeUserIndex;
 		this.recipientIndex = recipientIndex;
 		this.subContentsIndex = subContentsIndex;
@@ -1452,7 +1456,7 @@ public enum Defaults implements ServerOutputLineType{
 	
 	@Override
 	public boolean isLegal(String ServerOutputLineString){
-		return ServerOutputLineString.matches(acceptedFormat);
+		return acceptedPattern.matcher(ServerOutputLineString).matches();
 	}
 	
 	
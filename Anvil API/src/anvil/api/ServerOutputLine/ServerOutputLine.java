@@ -1,11 +1,12 @@
 package anvil.api.ServerOutputLine;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import anvil.api.PlugIn;
 import anvil.api.Internal.Player;
@@ -30,26 +31,39 @@ import anvil.api.Internal.Runner;
  */
 public class ServerOutputLine{
 	private static LinkedList<Class<? extends ServerOutputLineType>> known_types = new LinkedList<>();
+	private static volatile ServerOutputLineClassifier classifier = new ServerOutputLineClassifier(known_types,
+			null);
+	private static ConcurrentHashMap<ServerOutputLineType, Pattern> compiled_formats = new ConcurrentHashMap<>();
 	
 	
 	private ServerOutputLineType type;
 	private String entireLine;
 	
+	private int timeStart = -1;
+	private int threadStart = -1;
+	private int threadEnd = -1;
+	private int loggerStart = -1;
+	private int loggerEnd = -1;
+	private int contentsStart = 0;
+	
 	private String timeStamp;
 	private String threadStamp;
+	private String loggerStamp;
 	
 	private String contents;
 	private String subContents;
+	private String causeUserName;
+	private String recipientName;
 	private Player causeUser;
 	private Player recipient;
 	
-	private Pattern pattern;
-	private Matcher matcher;
+	private int[] spans;
 	
-	private boolean loaded_values = false;
+	private volatile boolean loaded_values = false;
+	private volatile boolean loaded_players = false;
+	private volatile boolean resolved = true;
 	
-	private static final String ENTIRE_REGEX = "\\[((0[0-9]|1[0-9]|2[0-3]):[0-5][0-9]:[0-5][0-9])\\] "
-			+ "\\[(\\p{ASCII}{1,})\\]: (\\p{ASCII}{1,})";
+	private static final int TIME_LENGTH = 8;
 	
 	
 	/**
@@ -67,19 +81,11 @@ public class ServerOutputLine{
 	public ServerOutputLine(String entire_line, ServerOutputLineType type) throws IllegalArgumentException{
 		entireLine = entire_line;
 		
-		pattern = Pattern.compile(ENTIRE_REGEX);
-		matcher = pattern.matcher(entire_line);
-		
-		matcher.find();
-		
-		timeStamp = matcher.group(1);
-		threadStamp = matcher.group(3);
-		
-		contents = matcher.group(4);
+		parseHeader();
 		
 		
 		if (type != null){
-			if (!type.isLegal(contents)){
+			if (!type.isLegal(getContents())){
 				throw new IllegalArgumentException("The given contents don't match the acceptedFormat of the "
 						+ "given ServerOutputLineType.");
 			}
@@ -96,7 +102,8 @@ public class ServerOutputLine{
 	 * Constructs a ServerOutputLine object with the contents of the line.
 	 * <p>
 	 * Searches through all the known ServerOutputLineTypes to find the correct match. Will be generic if a 
-	 * suitable type can't be found. Uses the isLegal method with the contents to check.
+	 * suitable type can't be found. Uses the precompiled acceptedFormats of the known types to check, see 
+	 * {@link #addKnownType(Class)}.
 	 * <p>
 	 * While a ServerOutputLine object can be made anywhere, only Anvil's generated output lines will be passed 
 	 * to each {@link PlugIn#interpretServerOutputLine(String, ServerOutputLine)} method.
@@ -107,55 +114,193 @@ public class ServerOutputLine{
 	public ServerOutputLine(String entire_line){
 		entireLine = entire_line;
 		
-		pattern = Pattern.compile(ENTIRE_REGEX);
-		matcher = pattern.matcher(entire_line);
+		parseHeader();
 		
-		matcher.find();
 		
-		timeStamp = matcher.group(1);
-		threadStamp = matcher.group(3);
+		classify();
+	}
+	
+	
+	/**
+	 * Constructs a ServerOutputLine object with the contents of the line, optionally putting off the work.
+	 * <p>
+	 * When lazy, the constructor only keeps the line. The header is read and the known ServerOutputLineTypes 
+	 * are searched the first time any of the line's information is asked for, on whichever thread asks first. 
+	 * Every thread after that gets the same answer. This lets a {@link Runner} keep up with the server no 
+	 * matter how many types are known, see {@link Runner#setLazyClassification(boolean)}.
+	 * <p>
+	 * A lazy line is classified with the types known when it's first used, not when it was made.
+	 * 
+	 * @param entire_line String object containing every part of the ServerOutputLine. Literally what the entire 
+	 * line that the server returns.
+	 * @param lazy Boolean representing whether or not to put off the classification until it's needed. False 
+	 * is the same as {@link #ServerOutputLine(String)}.
+	 */
+	public ServerOutputLine(String entire_line, boolean lazy){
+		entireLine = entire_line;
 		
-		contents = matcher.group(4);
+		if (lazy){
+			resolved = false;
+		}
+		else{
+			parseHeader();
+			
+			classify();
+		}
+	}
+	
+	
+	/**
+	 * Reads the header and classifies a lazy ServerOutputLine, if that hasn't been done yet. Is done exactly 
+	 * once, no matter how many threads are using the line.
+	 */
+	private void resolve(){
+		if (!resolved){
+			synchronized (this){
+				if (!resolved){
+					parseHeader();
+					
+					classify();
+					
+					resolved = true;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Searches through all the known ServerOutputLineTypes for the type of this line, keeping the spans of the 
+	 * match that found it.
+	 */
+	private void classify(){
+		ServerOutputLineClassifier.Match match = classifier.classify(entireLine, contentsStart);
 		
+		if (match != null){
+			type = match.type;
+			spans = match.spans;
+		}
+	}
+	
+	
+	/**
+	 * Finds where the timeStamp, threadStamp, loggerStamp, and contents are in the entire line. Only their 
+	 * indexes are kept, the Strings themselves are made the first time they're asked for.
+	 * <p>
+	 * These are the headers that are understood:
+	 * <ul>
+	 * <li>Vanilla: "[12:34:56] [Server thread/INFO]: ..."</li>
+	 * <li>Vanilla with a logger: "[12:34:56] [Server thread/INFO] [minecraft/DedicatedServer]: ..."</li>
+	 * <li>Forge: "[17Oct2019 12:34:56.789] [Server thread/INFO] [net.minecraft.server.MinecraftServer/]: ..." 
+	 * </li>
+	 * <li>Paper/Spigot: "[12:34:56 INFO]: ..."</li>
+	 * </ul> 
+	 * Lines without a header that can be understood (stack traces, for example) have no timeStamp or 
+	 * threadStamp, and the contents are the entire line.
+	 */
+	private void parseHeader(){
+		if (entireLine.isEmpty() || entireLine.charAt(0) != '['){
+			return;
+		}
+		
+		int close = entireLine.indexOf(']', 1);
 		
-		Class<?>[] param_types = new Class<?>[1];
-		param_types[0] = String.class;
+		if (close == -1){
+			return;
+		}
+		
+		
+		int time_start = findTime(1, close);
+		
+		if (time_start == -1){
+			return;
+		}
 		
-		Object[] params = new Object[] {contents};
 		
-		for (Class<? extends ServerOutputLineType> cl : known_types){
-			Method meth = null;
+		int thread_start = -1;
+		int thread_end = -1;
+		int logger_start = -1;
+		int logger_end = -1;
+		
+		//Paper puts the level right after the time, in the same brackets:
+		if (time_start == 1 && close > time_start + TIME_LENGTH + 1 &&
+				entireLine.charAt(time_start + TIME_LENGTH) == ' '){
 			
-			try{
-				meth = cl.getMethod("isLegal", param_types);
-			}
-			catch (NoSuchMethodException | SecurityException e1){
-				//This can't happen.
+			thread_start = time_start + TIME_LENGTH + 1;
+			thread_end = close;
+		}
+		
+		
+		int index = close + 1;
+		
+		if (entireLine.startsWith(" [", index)){
+			thread_start = index + 2;
+			thread_end = entireLine.indexOf(']', thread_start);
+			
+			if (thread_end == -1){
+				return;
 			}
 			
-			boolean isLegal = false;
+			index = thread_end + 1;
 			
-			for (Object obj : cl.getEnumConstants()){
-				try{
-					isLegal = (boolean)meth.invoke(obj, params);
-				}
-				catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e){
-					//This can't happen.
-				}
-				
+			
+			if (entireLine.startsWith(" [", index)){
+				logger_start = index + 2;
+				logger_end = entireLine.indexOf(']', logger_start);
 				
-				if (isLegal){
-					type = cl.cast(obj);
-					
-					break;
+				if (logger_end == -1){
+					return;
 				}
+				
+				index = logger_end + 1;
 			}
-			
-			
-			if (type != null){
-				break;
+		}
+		
+		
+		if (thread_start == -1 || !entireLine.startsWith(": ", index)){
+			return;
+		}
+		
+		timeStart = time_start;
+		threadStart = thread_start;
+		threadEnd = thread_end;
+		loggerStart = logger_start;
+		loggerEnd = logger_end;
+		contentsStart = index + 2;
+	}
+	
+	
+	/**
+	 * Finds the first "HH:MM:SS" time between the given indexes of the entire line.
+	 * 
+	 * @param from Integer representing the first index to check, inclusive.
+	 * @param to Integer representing the last index to check, exclusive.
+	 * @return Integer representing the index the time starts at. -1 if there's no time.
+	 */
+	private int findTime(int from, int to){
+		for (int i = from; i + TIME_LENGTH <= to; ++i){
+			if (isTwoDigits(i) && entireLine.charAt(i + 2) == ':' && isTwoDigits(i + 3) &&
+					entireLine.charAt(i + 5) == ':' && isTwoDigits(i + 6)){
+				
+				return i;
 			}
 		}
+		
+		return -1;
+	}
+	
+	
+	/**
+	 * Tells whether or not the 2 characters at the given index of the entire line are digits.
+	 * 
+	 * @param index Integer representing the index of the first character.
+	 * @return Whether or not both characters are digits.
+	 */
+	private boolean isTwoDigits(int index){
+		char first = entireLine.charAt(index);
+		char second = entireLine.charAt(index + 1);
+		
+		return first >= '0' && first <= '9' && second >= '0' && second <= '9';
 	}
 	
 	
@@ -182,19 +327,39 @@ public class ServerOutputLine{
 	 * @see ServerOutputLineType
 	 */
 	public ServerOutputLineType getType(){
+		resolve();
+		
 		return type;
 	}
 	
 	
+	/**
+	 * Tells whether or not the ServerOutputLine has been classified yet. Only lazy lines whose information 
+	 * hasn't been asked for yet aren't, see {@link #ServerOutputLine(String, boolean)}. Doesn't classify the 
+	 * line.
+	 * 
+	 * @return Whether or not the ServerOutputLine has been classified.
+	 */
+	public boolean isClassified(){
+		return resolved;
+	}
+	
+	
 	/**
 	 * Gets the timeStamp of the ServerOutputLine.
 	 * <p>
 	 * The timeStamp is not necessarily the exact time the ServerOutputLine was created, but rather the time 
 	 * the Minecraft server mentioned in the output line. ("[12:34:56] ...")
 	 * 
-	 * @return String object containing the timeStamp of the ServerOutputLine.
+	 * @return String object containing the timeStamp of the ServerOutputLine. Null if the line has no header.
 	 */
 	public String getTimeStamp(){
+		resolve();
+		
+		if (timeStamp == null && timeStart != -1){
+			timeStamp = entireLine.substring(timeStart, timeStart + TIME_LENGTH);
+		}
+		
 		return timeStamp;
 	}
 	
@@ -203,24 +368,55 @@ public class ServerOutputLine{
 	 * Gets the threadStamp of the ServerOutputLine.
 	 * <p>
 	 * The threadStamp is the thread that the Minecraft server mentions in the output line. ("... 
-	 * [example thread/INFO]: ...")
+	 * [example thread/INFO]: ...") Paper servers don't mention the thread, so only the level is given there.
 	 * 
-	 * @return String object containing the threadStamp of the ServerOutputLine.
+	 * @return String object containing the threadStamp of the ServerOutputLine. Null if the line has no header.
 	 */
 	public String getThreadStamp(){
+		resolve();
+		
+		if (threadStamp == null && threadStart != -1){
+			threadStamp = entireLine.substring(threadStart, threadEnd);
+		}
+		
 		return threadStamp;
 	}
 	
 	
+	/**
+	 * Gets the loggerStamp of the ServerOutputLine.
+	 * <p>
+	 * The loggerStamp is the logger that newer Minecraft and Forge servers mention after the threadStamp. 
+	 * ("... [example thread/INFO] [minecraft/DedicatedServer]: ...")
+	 * 
+	 * @return String object containing the loggerStamp of the ServerOutputLine. Null if none.
+	 */
+	public String getLoggerStamp(){
+		resolve();
+		
+		if (loggerStamp == null && loggerStart != -1){
+			loggerStamp = entireLine.substring(loggerStart, loggerEnd);
+		}
+		
+		return loggerStamp;
+	}
+	
+	
 	/**
 	 * Gets the contents of the ServerOutputLine.
 	 * <p>
 	 * The contents of the ServerOutputLine are everything that the Minecraft server gives per output line 
-	 * <em>without</em> the timeStamp or threadStamp.
+	 * <em>without</em> the timeStamp, threadStamp, or loggerStamp.
 	 * 
 	 * @return String object containing the contents of the ServerOutputLine.
 	 */
 	public String getContents(){
+		resolve();
+		
+		if (contents == null){
+			contents = entireLine.substring(contentsStart);
+		}
+		
 		return contents;
 	}
 	
@@ -234,6 +430,8 @@ public class ServerOutputLine{
 	 * @throws IllegalStateException When the ServerOutputLine is generic.
 	 */
 	public String getSubContents(){
+		resolve();
+		
 		if (type == null){
 			throw new IllegalStateException("The ServerOutputLine is generic and has no inner data.");
 		}
@@ -241,8 +439,6 @@ public class ServerOutputLine{
 		
 		if (!loaded_values){
 			LoadValues();
-			
-			loaded_values = true;
 		}
 		
 		return subContents;
@@ -258,6 +454,31 @@ public class ServerOutputLine{
 	 * @throws IllegalStateException When the ServerOutputLine is generic.
 	 */
 	public Player getCauseUser(){
+		resolve();
+		
+		if (type == null){
+			throw new IllegalStateException("The ServerOutputLine is generic and has no inner data.");
+		}
+		
+		
+		if (!loaded_players){
+			LoadPlayers();
+		}
+		
+		return causeUser;
+	}
+	
+	
+	/**
+	 * Gets the userName of the causeUser of the ServerOutputLine, without making a Player object out of it. Unlike 
+	 * {@link #getCauseUser()}, this never waits for Mojang's servers.
+	 * 
+	 * @return String object containing the userName of the causeUser. Null if none.
+	 * @throws IllegalStateException When the ServerOutputLine is generic.
+	 */
+	public String getCauseUserName(){
+		resolve();
+		
 		if (type == null){
 			throw new IllegalStateException("The ServerOutputLine is generic and has no inner data.");
 		}
@@ -265,11 +486,9 @@ public class ServerOutputLine{
 		
 		if (!loaded_values){
 			LoadValues();
-			
-			loaded_values = true;
 		}
 		
-		return causeUser;
+		return causeUserName;
 	}
 	
 	
@@ -282,6 +501,31 @@ public class ServerOutputLine{
 	 * @throws IllegalStateException When the ServerOutputLine is generic.
 	 */
 	public Player getRecipient(){
+		resolve();
+		
+		if (type == null){
+			throw new IllegalStateException("The ServerOutputLine is generic and has no inner data.");
+		}
+		
+		
+		if (!loaded_players){
+			LoadPlayers();
+		}
+		
+		return recipient;
+	}
+	
+	
+	/**
+	 * Gets the userName of the recipient of the ServerOutputLine, without making a Player object out of it. Unlike 
+	 * {@link #getRecipient()}, this never waits for Mojang's servers.
+	 * 
+	 * @return String object containing the userName of the recipient. Null if none.
+	 * @throws IllegalStateException When the ServerOutputLine is generic.
+	 */
+	public String getRecipientName(){
+		resolve();
+		
 		if (type == null){
 			throw new IllegalStateException("The ServerOutputLine is generic and has no inner data.");
 		}
@@ -289,11 +533,9 @@ public class ServerOutputLine{
 		
 		if (!loaded_values){
 			LoadValues();
-			
-			loaded_values = true;
 		}
 		
-		return recipient;
+		return recipientName;
 	}
 	
 	
@@ -304,6 +546,8 @@ public class ServerOutputLine{
 	 * @throws IllegalStateException When the ServerOutputLine is generic.
 	 */
 	public boolean isDeathMessage(){
+		resolve();
+		
 		if (type == null){
 			throw new IllegalStateException("The ServerOutputLine is generic and has no inner data.");
 		}
@@ -314,40 +558,132 @@ public class ServerOutputLine{
 	
 	/**
 	 * Loads all the inner values into the object. This isn't done in the constructor just in case the data 
-	 * isn't used later on and wastes processor power.
+	 * isn't used later on and wastes processor power. Only the first call does anything.
+	 * <p>
+	 * Lines that were classified by searching the known types already have the spans of their match, so this 
+	 * only cuts the values out of the entire line. Lines that were given their type have to match once, using 
+	 * the type's compiled acceptedFormat.
 	 * 
 	 * @throws IllegalArgumentException When the Players don't load properly.
 	 */
-	private void LoadValues() throws IllegalArgumentException{
-		pattern = Pattern.compile(type.getAcceptedFormat());
-		matcher = pattern.matcher(contents);
-		matcher.find();
+	private synchronized void LoadValues() throws IllegalArgumentException{
+		if (loaded_values){
+			return;
+		}
+		
+		
+		if (spans == null){
+			Matcher matcher = getCompiledFormat(type).matcher(entireLine).region(contentsStart,
+					entireLine.length());
+			
+			if (!matcher.matches()){
+				matcher.region(contentsStart, entireLine.length()).find();
+			}
+			
+			spans = ServerOutputLineClassifier.spansOf(matcher);
+		}
+		
 		
 		if (type.getSubContentsIndex() == -1){
 			subContents = null;
 		}
 		else{
-			subContents = matcher.group(type.getSubContentsIndex());
+			subContents = group(type.getSubContentsIndex());
+		}
+		
+		if (type.getRecipientIndex() == -1){
+			recipientName = null;
+		}
+		else{
+			recipientName = group(type.getRecipientIndex());
+		}
+		
+		if (type.getCauseUserIndex() == -1){
+			causeUserName = null;
+		}
+		else{
+			causeUserName = group(type.getCauseUserIndex());
+		}
+		
+		loaded_values = true;
+	}
+	
+	
+	/**
+	 * Loads the causeUser and recipient Players into the object. Kept apart from {@link #LoadValues()}, since 
+	 * making an unknown Player waits for Mojang's servers, and most lines never need their Players. Only the 
+	 * first call does anything.
+	 * 
+	 * @throws IllegalArgumentException When the Players don't load properly.
+	 */
+	private synchronized void LoadPlayers() throws IllegalArgumentException{
+		if (loaded_players){
+			return;
 		}
 		
+		if (!loaded_values){
+			LoadValues();
+		}
+		
+		
 		try {
-			if (type.getRecipientIndex() == -1){
-				recipient = null;
-			}
-			else{
-				recipient = new Player(matcher.group(type.getRecipientIndex()));
+			if (recipientName != null){
+				recipient = new Player(recipientName);
 			}
 			
-			if (type.getCauseUserIndex() == -1){
-				causeUser = null;
+			if (causeUserName != null){
+				causeUser = new Player(causeUserName);
 			}
-			else{
-				causeUser = new Player(matcher.group(type.getCauseUserIndex()));
-			}	
 		}
 		catch (IOException e){
 			//If this happens, you have more to worry about.
 		}
+		
+		loaded_players = true;
+	}
+	
+	
+	/**
+	 * Gets the given group of the match that classified this line, straight from the entire line.
+	 * 
+	 * @param index Integer representing the index of the group.
+	 * @return String object containing the group. Null if the group didn't take part in the match.
+	 * @throws IndexOutOfBoundsException When the acceptedFormat has no group with the given index.
+	 */
+	private String group(int index) throws IndexOutOfBoundsException{
+		if (index < 0 || 2 * index >= spans.length){
+			throw new IndexOutOfBoundsException("No group " + index);
+		}
+		
+		if (spans[2 * index] == -1){
+			return null;
+		}
+		
+		return entireLine.substring(spans[2 * index], spans[2 * index + 1]);
+	}
+	
+	
+	/**
+	 * Gets the compiled acceptedFormat of the given type. Each format is compiled the first time it's needed, 
+	 * and then shared by every ServerOutputLine.
+	 * 
+	 * @param type The ServerOutputLineType enumeration to get the compiled acceptedFormat of.
+	 * @return Pattern object containing the compiled acceptedFormat of the type.
+	 */
+	private static Pattern getCompiledFormat(ServerOutputLineType type){
+		Pattern pattern = compiled_formats.get(type);
+		
+		if (pattern == null){
+			pattern = Pattern.compile(type.getAcceptedFormat());
+			
+			Pattern existing = compiled_formats.putIfAbsent(type, pattern);
+			
+			if (existing != null){
+				pattern = existing;
+			}
+		}
+		
+		return pattern;
 	}
 	
 	
@@ -373,13 +709,163 @@ public class ServerOutputLine{
 	 * <li>Don't do anything too fancy in the ServerOutputLineType method overrides, everything complicated is 
 	 * handled by {@link ServerOutputLine} anyways.</li>
 	 * </ul>
+	 * <p>
+	 * Every acceptedFormat of the new type is compiled once, right here, along with all the other known types. 
+	 * Classifying a line then uses those compiled formats rather than calling 
+	 * {@link ServerOutputLineType#isLegal(String)} on each enumeration, so the acceptedFormat must describe 
+	 * exactly what isLegal accepts.
 	 * 
 	 * @param <T> Any class that extends Enum (being an enum counts) and implements the ServerOutputLineType 
 	 * interface.
 	 * @param newType The class of the new ServerOutputLineType to add to the known list.
+	 * @throws PatternSyntaxException When an acceptedFormat of the new type isn't a legal regex pattern.
+	 */
+	public static <T extends Enum<?> & ServerOutputLineType> void addKnownType(Class<T> newType)
+			throws PatternSyntaxException{
+		synchronized (known_types){
+			known_types.add(newType);
+			
+			classifier = new ServerOutputLineClassifier(known_types, classifier);
+		}
+	}
+	
+	
+	/**
+	 * Sets whether or not the known ServerOutputLineTypes are checked in an adaptive order. Off by default.
+	 * <p>
+	 * Every enumeration counts the lines it matches. When adaptive, the enumerations that match the most (chat, 
+	 * usually) are periodically moved ahead of the ones that rarely do, so classifying a typical line takes 
+	 * fewer checks. An enumeration is only ever moved ahead of another when no line could match both of them, 
+	 * so the first match stays the same as in the normal order. Overriding the Defaults from a PlugIn keeps 
+	 * working exactly as described in {@link #addKnownType(Class)}.
+	 * 
+	 * @param adaptive Boolean representing whether or not to use the adaptive order.
+	 * 
+	 * @see #getTypeHitCounts()
+	 */
+	public static void setAdaptiveOrdering(boolean adaptive){
+		synchronized (known_types){
+			classifier.setAdaptive(adaptive);
+		}
+	}
+	
+	
+	/**
+	 * Gets whether or not the known ServerOutputLineTypes are checked in an adaptive order.
+	 * 
+	 * @return Whether or not the known ServerOutputLineTypes are checked in an adaptive order.
+	 * 
+	 * @see #setAdaptiveOrdering(boolean)
+	 */
+	public static boolean isAdaptiveOrdering(){
+		return classifier.isAdaptive();
+	}
+	
+	
+	/**
+	 * Gets how many lines each enumeration of the known ServerOutputLineTypes has matched so far, in the order 
+	 * they're currently being checked. Lines made with a given type aren't counted.
+	 * <p>
+	 * Useful for seeing which types a server actually uses, and whether {@link #setAdaptiveOrdering(boolean)} 
+	 * is worth it.
+	 * 
+	 * @return LinkedHashMap containing the number of lines matched by each enumeration.
+	 * 
+	 * @see #getGenericLineCount()
+	 */
+	public static LinkedHashMap<ServerOutputLineType, Long> getTypeHitCounts(){
+		return classifier.getHitCounts();
+	}
+	
+	
+	/**
+	 * Sets how many different contents are remembered along with their ServerOutputLineType. Off (0) by default.
+	 * <p>
+	 * Servers repeat a lot of their lines word for word ("Can't keep up!", "Saving the game", the same warning 
+	 * from a mod over and over). A line whose contents are remembered isn't classified again. The least 
+	 * recently seen contents are forgotten first. Adding a known type forgets everything, see 
+	 * {@link #addKnownType(Class)}.
+	 * <p>
+	 * Remembering isn't free: every line's contents are copied out of it, and every thread classifying lines 
+	 * shares the lock on what's remembered. It's only worth turning on when the known types are expensive to 
+	 * check and the server repeats itself a lot.
+	 * 
+	 * @param size Integer representing how many contents to remember. 0 turns remembering off.
+	 * @throws IllegalArgumentException When the given size is negative.
+	 * 
+	 * @see #getClassificationCacheHits()
+	 * @see #getClassificationCacheMisses()
+	 * @see #getClassificationCacheEvictions()
+	 */
+	public static void setClassificationCacheSize(int size) throws IllegalArgumentException{
+		if (size < 0){
+			throw new IllegalArgumentException("The given size is negative.");
+		}
+		
+		synchronized (known_types){
+			classifier.setCacheSize(size);
+		}
+	}
+	
+	
+	/**
+	 * Gets how many different contents are remembered along with their ServerOutputLineType.
+	 * 
+	 * @return Integer representing how many contents are remembered. 0 if remembering is off.
+	 * 
+	 * @see #setClassificationCacheSize(int)
+	 */
+	public static int getClassificationCacheSize(){
+		return classifier.getCacheSize();
+	}
+	
+	
+	/**
+	 * Gets how many lines were classified by remembering their contents.
+	 * 
+	 * @return Long representing the number of cache hits.
+	 * 
+	 * @see #setClassificationCacheSize(int)
+	 */
+	public static long getClassificationCacheHits(){
+		return classifier.getCacheHits();
+	}
+	
+	
+	/**
+	 * Gets how many lines had to be classified because their contents weren't remembered.
+	 * 
+	 * @return Long representing the number of cache misses.
+	 * 
+	 * @see #setClassificationCacheSize(int)
+	 */
+	public static long getClassificationCacheMisses(){
+		return classifier.getCacheMisses();
+	}
+	
+	
+	/**
+	 * Gets how many contents were forgotten to make room for newer ones. A lot of these next to few hits means 
+	 * the cache is too small to be useful.
+	 * 
+	 * @return Long representing the number of cache evictions.
+	 * 
+	 * @see #setClassificationCacheSize(int)
+	 */
+	public static long getClassificationCacheEvictions(){
+		return classifier.getCacheEvictions();
+	}
+	
+	
+	/**
+	 * Gets how many lines haven't matched any of the known ServerOutputLineTypes so far.
+	 * 
+	 * @return Long representing the number of generic lines.
+	 * 
+	 * @see #getTypeHitCounts()
 	 */
-	public static <T extends Enum<?> & ServerOutputLineType> void addKnownType(Class<T> newType){
-		known_types.add(newType);
+	public static long getGenericLineCount(){
+		return classifier.getGenericHitCount();
 	}
 	
 	
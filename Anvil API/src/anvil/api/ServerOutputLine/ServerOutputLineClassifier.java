@@ -0,0 +1,1218 @@
+package anvil.api.ServerOutputLine;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * Represents the compiled form of every known ServerOutputLineType.
+ * <p>
+ * A ServerOutputLineClassifier is built every time {@link ServerOutputLine#addKnownType(Class)} is called, 
+ * never per line. Every enumeration of every known type has its acceptedFormat compiled a single time, and the 
+ * literal text each format requires is pulled out of it:
+ * <ul>
+ * <li><b>Prefix:</b> The literal text the format starts with. ("Made ", "Banned ", "[", "Done (")</li>
+ * <li><b>Suffix:</b> The literal text the format ends with. (" drowned", " a server operator")</li>
+ * <li><b>Keyword:</b> The longest literal text anywhere else in the format. (" was slain by ")</li>
+ * </ul>
+ * <p>
+ * The enumerations are indexed by the first character of their prefix, or the last character of their suffix 
+ * when they don't have one. Classifying a line only looks at the enumerations in the buckets for the line's 
+ * first and last characters, plus the few that have neither, and only runs a regex once all of an 
+ * enumeration's literals are found in the line. Most generic lines are thrown out without running a single 
+ * regex. By default, the candidates are checked in the order of the known types (and the enumerations' declaration 
+ * order inside of them), so the first match still wins.
+ * <p>
+ * Every acceptedFormat is also joined into one combined alternation, in the order of the known types. When a 
+ * line has all the literals of more than {@value #COMBINED_THRESHOLD} candidates, the index couldn't narrow it 
+ * down, so the rest of it is classified with the combined alternation in a single pass instead. If an 
+ * acceptedFormat can't be safely joined with the others (inline flags, named groups or back-references would 
+ * change meaning once the groups are renumbered), there's no combined alternation, and every candidate is tried 
+ * on its own.
+ * <p>
+ * ServerOutputLineClassifier objects never change their compiled formats once built, and the order they check 
+ * them in is swapped out as a whole, so they can be shared by every thread that creates ServerOutputLines.
+ * <p>
+ * Every match is counted per enumeration. In adaptive mode, the candidates are periodically reordered so the 
+ * enumerations that match the most are checked first. An enumeration is only ever moved ahead of an earlier one 
+ * when it's provable that no line can match both (they need different prefixes or different suffixes, or one 
+ * can't match anything starting with the other's prefix). 
+ * Enumerations that could match the same line, like a PlugIn's type overriding a Default, always keep their 
+ * original order, so the first match is the same either way.
+ * <p>
+ * Servers repeat a lot of their lines word for word ("Can't keep up!", "Saving the game"), so the result for 
+ * recent contents can be kept in a bounded, least recently used cache. A repeated line skips classification 
+ * entirely. The cache is off by default, since it copies every line's contents and is shared by every thread 
+ * classifying lines.
+ * <p>
+ * The match that classified a line is kept as the spans of its groups, so the ServerOutputLine never has to run 
+ * the regex again to get its subContents, causeUser, or recipient.
+ * 
+ * @author Garrett Stonis
+ * @version 1.0
+ * 
+ * @see ServerOutputLine
+ * @see ServerOutputLineType
+ */
+class ServerOutputLineClassifier{
+	private static final int[] NO_CANDIDATES = new int[0];
+	
+	private static final int REORDER_INTERVAL = 4096;
+	
+	private static final int COMBINED_THRESHOLD = 4;
+	
+	
+	private ServerOutputLineType[] types;
+	private Pattern[] patterns;
+	
+	private String[] prefixes;
+	private String[] suffixes;
+	private String[] keywords;
+	
+	private Pattern combined;
+	private int[] combinedGroups;
+	private int[] groupCounts;
+	
+	private int[][] later_overlaps;
+	private int[] earlier_overlap_counts;
+	
+	private volatile Order order;
+	
+	private AtomicLongArray hits;
+	private AtomicLong generic_hits = new AtomicLong();
+	private AtomicLong classified = new AtomicLong();
+	
+	private volatile boolean adaptive = false;
+	
+	private LinkedHashMap<String, CachedMatch> cache;
+	private volatile int cache_size = DEFAULT_CACHE_SIZE;
+	private AtomicLong cache_hits = new AtomicLong();
+	private AtomicLong cache_misses = new AtomicLong();
+	private AtomicLong cache_evictions = new AtomicLong();
+	
+	static final int DEFAULT_CACHE_SIZE = 0;
+	
+	
+	/**
+	 * Constructs a ServerOutputLineClassifier object from the given known types.
+	 * 
+	 * @param known_types List containing the classes of every known ServerOutputLineType, in the order they 
+	 * should be checked.
+	 * @param previous ServerOutputLineClassifier object to carry the hit counts and adaptive mode over from. 
+	 * Null if none.
+	 * @throws PatternSyntaxException When an acceptedFormat isn't a legal regex pattern.
+	 */
+	ServerOutputLineClassifier(List<Class<? extends ServerOutputLineType>> known_types,
+			ServerOutputLineClassifier previous) throws PatternSyntaxException{
+		
+		LinkedList<ServerOutputLineType> type_list = new LinkedList<>();
+		
+		for (Class<? extends ServerOutputLineType> cl : known_types){
+			for (ServerOutputLineType type : cl.getEnumConstants()){
+				type_list.add(type);
+			}
+		}
+		
+		
+		types = type_list.toArray(new ServerOutputLineType[0]);
+		patterns = new Pattern[types.length];
+		
+		prefixes = new String[types.length];
+		suffixes = new String[types.length];
+		keywords = new String[types.length];
+		
+		
+		// {{ Build the Literal Index:
+		
+		HashMap<Character, LinkedList<Integer>> prefix_lists = new HashMap<>();
+		HashMap<Character, LinkedList<Integer>> suffix_lists = new HashMap<>();
+		LinkedList<Integer> unindexed_list = new LinkedList<>();
+		
+		for (int i = 0; i < types.length; ++i){
+			String format = types[i].getAcceptedFormat();
+			
+			patterns[i] = Pattern.compile(format);
+			
+			
+			String[] literals = extractLiterals(format);
+			
+			prefixes[i] = literals[0];
+			suffixes[i] = literals[1];
+			keywords[i] = literals[2];
+			
+			
+			if (!prefixes[i].isEmpty()){
+				addToIndex(prefix_lists, prefixes[i].charAt(0), i);
+			}
+			else if (!suffixes[i].isEmpty()){
+				addToIndex(suffix_lists, suffixes[i].charAt(suffixes[i].length() - 1), i);
+			}
+			else{
+				unindexed_list.add(i);
+			}
+		}
+		
+		
+		HashMap<Character, int[]> prefix_index = new HashMap<>();
+		HashMap<Character, int[]> suffix_index = new HashMap<>();
+		
+		for (Character key : prefix_lists.keySet()){
+			prefix_index.put(key, toArray(prefix_lists.get(key)));
+		}
+		
+		for (Character key : suffix_lists.keySet()){
+			suffix_index.put(key, toArray(suffix_lists.get(key)));
+		}
+		
+		int[] rank = new int[types.length];
+		
+		for (int i = 0; i < rank.length; ++i){
+			rank[i] = i;
+		}
+		
+		order = new Order(rank, prefix_index, suffix_index, toArray(unindexed_list));
+		
+		// }} Build the Literal Index:
+		
+		
+		buildCombined();
+		
+		
+		// {{ Find the Overlapping Enumerations:
+		
+		later_overlaps = new int[types.length][];
+		earlier_overlap_counts = new int[types.length];
+		
+		for (int i = 0; i < types.length; ++i){
+			LinkedList<Integer> overlaps = new LinkedList<>();
+			
+			for (int j = i + 1; j < types.length; ++j){
+				if (!isDisjoint(i, j)){
+					overlaps.add(j);
+					
+					++earlier_overlap_counts[j];
+				}
+			}
+			
+			later_overlaps[i] = toArray(overlaps);
+		}
+		
+		// }} Find the Overlapping Enumerations:
+		
+		
+		cache = new LinkedHashMap<String, CachedMatch>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedMatch> eldest){
+				if (size() > cache_size){
+					cache_evictions.incrementAndGet();
+					
+					return true;
+				}
+				
+				return false;
+			}
+		};
+		
+		
+		hits = new AtomicLongArray(types.length);
+		
+		if (previous != null){
+			for (int i = 0; i < types.length; ++i){
+				for (int j = 0; j < previous.types.length; ++j){
+					if (previous.types[j] == types[i]){
+						hits.set(i, previous.hits.get(j));
+						
+						break;
+					}
+				}
+			}
+			
+			generic_hits.set(previous.generic_hits.get());
+			
+			adaptive = previous.adaptive;
+			
+			cache_size = previous.cache_size;
+			cache_hits.set(previous.cache_hits.get());
+			cache_misses.set(previous.cache_misses.get());
+			cache_evictions.set(previous.cache_evictions.get());
+			
+			if (adaptive){
+				reorder();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Classifies the contents of a ServerOutputLine. The contents are read straight out of the entire line, so 
+	 * they never have to be copied.
+	 * 
+	 * @param line String object containing the entire line of the ServerOutputLine.
+	 * @param start Integer representing the index in the line where the contents start. The contents always 
+	 * run to the end of the line.
+	 * @return Match object containing the first known ServerOutputLineType whose acceptedFormat matches the 
+	 * contents. Null if generic.
+	 */
+	Match classify(String line, int start){
+		if (adaptive && classified.incrementAndGet() % REORDER_INTERVAL == 0){
+			reorder();
+		}
+		
+		
+		Match match;
+		
+		if (cache_size > 0){
+			String contents = line.substring(start);
+			
+			CachedMatch cached;
+			synchronized (cache){
+				cached = cache.get(contents);
+			}
+			
+			
+			if (cached != null){
+				cache_hits.incrementAndGet();
+				
+				match = cached.toMatch(start);
+			}
+			else{
+				cache_misses.incrementAndGet();
+				
+				match = search(line, start);
+				
+				synchronized (cache){
+					if (cache_size > 0){
+						cache.put(contents, new CachedMatch(match, start));
+					}
+				}
+			}
+		}
+		else{
+			match = search(line, start);
+		}
+		
+		
+		if (match == null){
+			generic_hits.incrementAndGet();
+		}
+		else{
+			hits.incrementAndGet(match.index);
+		}
+		
+		return match;
+	}
+	
+	
+	/**
+	 * Searches the candidates for the first enumeration that matches the contents of the given line.
+	 * 
+	 * @param line String object containing the entire line of the ServerOutputLine.
+	 * @param start Integer representing the index in the line where the contents start.
+	 * @return Match object containing the first enumeration that matches. Null if generic.
+	 */
+	private Match search(String line, int start){
+		Order current = order;
+		int[] rank = current.rank;
+		int[] unindexed = current.unindexed;
+		
+		int[] by_prefix = NO_CANDIDATES;
+		int[] by_suffix = NO_CANDIDATES;
+		
+		if (start < line.length()){
+			int[] temp = current.prefixIndex.get(line.charAt(start));
+			
+			if (temp != null){
+				by_prefix = temp;
+			}
+			
+			
+			temp = current.suffixIndex.get(line.charAt(line.length() - 1));
+			
+			if (temp != null){
+				by_suffix = temp;
+			}
+		}
+		
+		
+		//Merge the 3 candidate lists, they're each already in rank order:
+		int p = 0;
+		int s = 0;
+		int u = 0;
+		
+		int tried = 0;
+		
+		while (p < by_prefix.length || s < by_suffix.length || u < unindexed.length){
+			int candidate = -1;
+			
+			if (p < by_prefix.length){
+				candidate = by_prefix[p];
+			}
+			
+			if (s < by_suffix.length && (candidate == -1 || rank[by_suffix[s]] < rank[candidate])){
+				candidate = by_suffix[s];
+			}
+			
+			if (u < unindexed.length && (candidate == -1 || rank[unindexed[u]] < rank[candidate])){
+				candidate = unindexed[u];
+			}
+			
+			
+			if (p < by_prefix.length && by_prefix[p] == candidate){
+				++p;
+			}
+			else if (s < by_suffix.length && by_suffix[s] == candidate){
+				++s;
+			}
+			else{
+				++u;
+			}
+			
+			
+			if (!hasLiterals(candidate, line, start)){
+				continue;
+			}
+			
+			if (combined != null && ++tried > COMBINED_THRESHOLD){
+				return matchCombined(line, start);	//Every candidate before this one already failed.
+			}
+			
+			
+			Matcher matcher = patterns[candidate].matcher(line).region(start, line.length());
+			
+			if (matcher.matches()){
+				return new Match(candidate, types[candidate], spansOf(matcher));
+			}
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Classifies the contents of the given line with the combined alternation. The alternatives are in the order 
+	 * of the known types, which picks the same enumeration as the current rank, since enumerations that could 
+	 * match the same line never swap places.
+	 * 
+	 * @param line String object containing the entire line of the ServerOutputLine.
+	 * @param start Integer representing the index in the line where the contents start.
+	 * @return Match object containing the first enumeration that matches. Null if generic.
+	 */
+	private Match matchCombined(String line, int start){
+		Matcher matcher = combined.matcher(line).region(start, line.length());
+		
+		if (!matcher.matches()){
+			return null;
+		}
+		
+		
+		for (int i = 0; i < combinedGroups.length; ++i){
+			if (matcher.start(combinedGroups[i]) != -1){
+				int[] spans = new int[(groupCounts[i] + 1) * 2];
+				
+				for (int g = 0; g <= groupCounts[i]; ++g){
+					spans[2 * g] = matcher.start(combinedGroups[i] + g);
+					spans[2 * g + 1] = matcher.end(combinedGroups[i] + g);
+				}
+				
+				return new Match(i, types[i], spans);
+			}
+		}
+		
+		return null;	//Can't happen, one of the alternatives matched.
+	}
+	
+	
+	/**
+	 * Joins every acceptedFormat into the combined alternation, in the order of the known types. Leaves it null 
+	 * when any of them can't be joined, or the joined pattern doesn't compile.
+	 */
+	private void buildCombined(){
+		if (types.length == 0){
+			return;
+		}
+		
+		
+		StringBuilder combined_regex = new StringBuilder("(?:");
+		combinedGroups = new int[types.length];
+		groupCounts = new int[types.length];
+		
+		int group = 1;
+		for (int i = 0; i < types.length; ++i){
+			String format = types[i].getAcceptedFormat();
+			
+			if (!isCombinable(format)){
+				combinedGroups = null;
+				groupCounts = null;
+				
+				return;
+			}
+			
+			
+			if (i != 0){
+				combined_regex.append('|');
+			}
+			
+			combined_regex.append('(').append(format).append(')');
+			
+			combinedGroups[i] = group;
+			groupCounts[i] = patterns[i].matcher("").groupCount();
+			group += groupCounts[i] + 1;
+		}
+		
+		combined_regex.append(')');
+		
+		
+		try{
+			combined = Pattern.compile(combined_regex.toString());
+		}
+		catch (PatternSyntaxException e){
+			//Every format compiled on its own, so just check them one at a time.
+			combined = null;
+			combinedGroups = null;
+			groupCounts = null;
+		}
+	}
+	
+	
+	/**
+	 * Tells whether or not the given acceptedFormat keeps its meaning once it is wrapped in a group and joined 
+	 * with the other formats.
+	 * 
+	 * @param format String object containing the acceptedFormat to check.
+	 * @return Whether or not the given acceptedFormat can be put in the combined pattern.
+	 */
+	private static boolean isCombinable(String format){
+		for (int i = 0; i < format.length() - 1; ++i){
+			char current = format.charAt(i);
+			char next = format.charAt(i + 1);
+			
+			if (current == '\\'){
+				if (Character.isDigit(next) || next == 'k'){	//Back-references get renumbered.
+					return false;
+				}
+				
+				++i;	//Skip whatever was escaped.
+			}
+			else if (current == '(' && next == '?'){	//Inline flags and named groups leak or collide.
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Sets the maximum number of contents the cache keeps. The least recently used contents are dropped first.
+	 * 
+	 * @param size Integer representing the maximum number of contents to keep. 0 turns the cache off.
+	 */
+	void setCacheSize(int size){
+		synchronized (cache){
+			cache_size = size;
+			
+			Iterator<String> iterator = cache.keySet().iterator();
+			while (cache.size() > size){
+				iterator.next();
+				iterator.remove();
+				
+				cache_evictions.incrementAndGet();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Gets the maximum number of contents the cache keeps.
+	 * 
+	 * @return Integer representing the maximum number of contents to keep. 0 if the cache is off.
+	 */
+	int getCacheSize(){
+		return cache_size;
+	}
+	
+	
+	/**
+	 * Gets how many lines were classified straight from the cache.
+	 * 
+	 * @return Long representing the number of cache hits.
+	 */
+	long getCacheHits(){
+		return cache_hits.get();
+	}
+	
+	
+	/**
+	 * Gets how many lines had to be classified because their contents weren't in the cache.
+	 * 
+	 * @return Long representing the number of cache misses.
+	 */
+	long getCacheMisses(){
+		return cache_misses.get();
+	}
+	
+	
+	/**
+	 * Gets how many contents were dropped from the cache to make room.
+	 * 
+	 * @return Long representing the number of cache evictions.
+	 */
+	long getCacheEvictions(){
+		return cache_evictions.get();
+	}
+	
+	
+	/**
+	 * Sets whether or not the candidates are reordered by how often they match.
+	 * 
+	 * @param adaptive Boolean representing whether or not to reorder the candidates.
+	 */
+	void setAdaptive(boolean adaptive){
+		this.adaptive = adaptive;
+		
+		if (adaptive){
+			reorder();
+		}
+	}
+	
+	
+	/**
+	 * Gets whether or not the candidates are reordered by how often they match.
+	 * 
+	 * @return Whether or not the candidates are reordered by how often they match.
+	 */
+	boolean isAdaptive(){
+		return adaptive;
+	}
+	
+	
+	/**
+	 * Gets how many lines each enumeration has matched, in the order the enumerations are currently checked.
+	 * 
+	 * @return LinkedHashMap containing the number of lines matched by each enumeration.
+	 */
+	LinkedHashMap<ServerOutputLineType, Long> getHitCounts(){
+		int[] rank = order.rank;
+		int[] by_rank = new int[rank.length];
+		
+		for (int i = 0; i < rank.length; ++i){
+			by_rank[rank[i]] = i;
+		}
+		
+		
+		LinkedHashMap<ServerOutputLineType, Long> counts = new LinkedHashMap<>();
+		
+		for (int index : by_rank){
+			counts.put(types[index], hits.get(index));
+		}
+		
+		return counts;
+	}
+	
+	
+	/**
+	 * Gets how many lines didn't match any enumeration.
+	 * 
+	 * @return Long representing the number of generic lines.
+	 */
+	long getGenericHitCount(){
+		return generic_hits.get();
+	}
+	
+	
+	/**
+	 * Reorders the candidates by how often they've matched, most first. This is a topological sort: an 
+	 * enumeration can't be ranked ahead of an earlier enumeration it overlaps with, so of the enumerations 
+	 * whose earlier overlaps are all ranked, the one with the most hits goes next.
+	 */
+	private synchronized void reorder(){
+		long[] counts = new long[types.length];
+		
+		for (int i = 0; i < counts.length; ++i){
+			counts[i] = hits.get(i);
+		}
+		
+		
+		int[] waiting_on = earlier_overlap_counts.clone();
+		boolean[] ranked = new boolean[types.length];
+		int[] rank = new int[types.length];
+		
+		for (int position = 0; position < rank.length; ++position){
+			int best = -1;
+			
+			for (int i = 0; i < types.length; ++i){
+				if (!ranked[i] && waiting_on[i] == 0 && (best == -1 || counts[i] > counts[best])){
+					best = i;
+				}
+			}
+			
+			
+			ranked[best] = true;
+			rank[best] = position;
+			
+			for (int later : later_overlaps[best]){
+				--waiting_on[later];
+			}
+		}
+		
+		
+		Order current = order;
+		
+		HashMap<Character, int[]> prefix_index = new HashMap<>();
+		HashMap<Character, int[]> suffix_index = new HashMap<>();
+		
+		for (Character key : current.prefixIndex.keySet()){
+			prefix_index.put(key, sortByRank(current.prefixIndex.get(key), rank));
+		}
+		
+		for (Character key : current.suffixIndex.keySet()){
+			suffix_index.put(key, sortByRank(current.suffixIndex.get(key), rank));
+		}
+		
+		order = new Order(rank, prefix_index, suffix_index, sortByRank(current.unindexed, rank));
+	}
+	
+	
+	/**
+	 * Tells whether or not the enumerations at the given indices can never match the same line. That's the 
+	 * case when neither of their prefixes starts the other, when neither of their suffixes ends the other, or 
+	 * when one's acceptedFormat can't match anything starting with the other's prefix.
+	 * 
+	 * @param first Integer representing the index of the first enumeration.
+	 * @param second Integer representing the index of the second enumeration.
+	 * @return Whether or not the enumerations can never match the same line.
+	 */
+	private boolean isDisjoint(int first, int second){
+		if (!prefixes[first].startsWith(prefixes[second]) && !prefixes[second].startsWith(prefixes[first])){
+			return true;
+		}
+		
+		if (!suffixes[first].endsWith(suffixes[second]) && !suffixes[second].endsWith(suffixes[first])){
+			return true;
+		}
+		
+		return cannotStartWith(first, prefixes[second]) || cannotStartWith(second, prefixes[first]);
+	}
+	
+	
+	/**
+	 * Tells whether or not the enumeration at the given index can never match a line starting with the given 
+	 * text. If the regex fails on the text without ever reaching its end, no longer line would do any better.
+	 * 
+	 * @param index Integer representing the index of the enumeration.
+	 * @param start String object containing the text the line would start with.
+	 * @return Whether or not the enumeration can never match a line starting with the text.
+	 */
+	private boolean cannotStartWith(int index, String start){
+		if (start.isEmpty() || types[index].getAcceptedFormat().contains("(?")){
+			return false;	//Lookarounds and flags aren't worth the risk.
+		}
+		
+		Matcher matcher = patterns[index].matcher(start);
+		
+		return !matcher.matches() && !matcher.hitEnd();
+	}
+	
+	
+	/**
+	 * Copies the given indices, sorted by their rank.
+	 * 
+	 * @param indices Integer array containing the indices to sort.
+	 * @param rank Integer array containing the rank of every index.
+	 * @return Integer array containing the same indices, lowest rank first.
+	 */
+	private static int[] sortByRank(int[] indices, int[] rank){
+		int[] sorted = indices.clone();
+		
+		for (int i = 1; i < sorted.length; ++i){
+			int index = sorted[i];
+			
+			int j = i - 1;
+			while (j >= 0 && rank[sorted[j]] > rank[index]){
+				sorted[j + 1] = sorted[j];
+				--j;
+			}
+			
+			sorted[j + 1] = index;
+		}
+		
+		return sorted;
+	}
+	
+	
+	/**
+	 * Tells whether or not the contents of the given line have every literal of the enumeration at the given 
+	 * index. The regex is only worth running when they do.
+	 * 
+	 * @param index Integer representing the index of the enumeration to check.
+	 * @param line String object containing the entire line of the ServerOutputLine.
+	 * @param start Integer representing the index in the line where the contents start.
+	 * @return Whether or not the contents have every literal of the enumeration.
+	 */
+	private boolean hasLiterals(int index, String line, int start){
+		return line.startsWith(prefixes[index], start) && line.length() - start >= suffixes[index].length() &&
+				line.endsWith(suffixes[index]) && line.indexOf(keywords[index], start) != -1;
+	}
+	
+	
+	/**
+	 * Gets the spans of every group of a successful match. Group g starts at index 2g and ends at index 2g + 1 
+	 * of the array, and both are -1 when the group didn't take part in the match.
+	 * 
+	 * @param matcher Matcher object containing a successful match.
+	 * @return Integer array containing the start and end of every group, including group 0.
+	 * @throws IllegalStateException When the matcher hasn't matched anything.
+	 */
+	static int[] spansOf(Matcher matcher) throws IllegalStateException{
+		int[] spans = new int[(matcher.groupCount() + 1) * 2];
+		
+		for (int g = 0; g <= matcher.groupCount(); ++g){
+			spans[2 * g] = matcher.start(g);
+			spans[2 * g + 1] = matcher.end(g);
+		}
+		
+		return spans;
+	}
+	
+	
+	/**
+	 * Pulls the literal text that every match of the given acceptedFormat has to contain.
+	 * <p>
+	 * This only has to be correct, not complete. Whenever part of the format is too fancy to reason about 
+	 * (inline flags, look-arounds, quoting, top-level alternation), less literal text is returned, which only 
+	 * means fewer lines are thrown out early.
+	 * 
+	 * @param format String object containing the acceptedFormat to read.
+	 * @return String array containing the prefix, suffix, and keyword of the format, in that order. Empty 
+	 * Strings when there are none.
+	 */
+	private static String[] extractLiterals(String format){
+		String[] none = new String[] {"", "", ""};
+		
+		LinkedList<String> runs = new LinkedList<>();
+		StringBuilder run = new StringBuilder();
+		
+		boolean starts_literal = true;
+		boolean ends_literal = false;
+		
+		int i = 0;
+		while (i < format.length()){
+			char current = format.charAt(i);
+			
+			int literal = -1;	//The literal character, -1 if the atom isn't a literal.
+			int end;			//Index just past the atom.
+			
+			if (current == '\\'){
+				if (i + 1 >= format.length()){
+					return none;
+				}
+				
+				char next = format.charAt(i + 1);
+				
+				if (next == 'p' || next == 'P'){
+					if (i + 2 < format.length() && format.charAt(i + 2) == '{'){
+						end = format.indexOf('}', i) + 1;
+						
+						if (end == 0){
+							return none;
+						}
+					}
+					else{
+						end = i + 3;
+					}
+				}
+				else if (next == 'Q' || next == 'k' || next == 'x' || next == 'u' || next == 'c' ||
+						next == '0'){
+					
+					return none;	//Not worth reasoning about.
+				}
+				else if (Character.isLetterOrDigit(next)){
+					end = i + 2;
+				}
+				else{
+					literal = next;
+					end = i + 2;
+				}
+			}
+			else if (current == '['){
+				end = skipClass(format, i);
+			}
+			else if (current == '('){
+				if (i + 1 < format.length() && format.charAt(i + 1) == '?'){
+					return none;
+				}
+				
+				end = skipGroup(format, i);
+			}
+			else if (current == '|' || current == ')' || current == ']' || current == '{'){
+				return none;
+			}
+			else if (current == '.' || current == '^' || current == '$'){
+				end = i + 1;
+			}
+			else{
+				literal = current;
+				end = i + 1;
+			}
+			
+			
+			if (end == -1){
+				return none;
+			}
+			
+			
+			//An atom with a quantifier isn't required text anymore:
+			if (end < format.length() && isQuantifier(format, end)){
+				literal = -1;
+				end = skipQuantifier(format, end);
+				
+				if (end == -1){
+					return none;
+				}
+			}
+			
+			
+			if (literal != -1){
+				run.append((char)literal);
+				
+				ends_literal = true;
+			}
+			else{
+				if (run.length() != 0){
+					runs.add(run.toString());
+					run.setLength(0);
+				}
+				else if (runs.isEmpty()){
+					starts_literal = false;
+				}
+				
+				ends_literal = false;
+			}
+			
+			i = end;
+		}
+		
+		if (run.length() != 0){
+			runs.add(run.toString());
+		}
+		
+		
+		if (runs.isEmpty()){
+			return none;
+		}
+		
+		
+		String prefix = starts_literal ? runs.getFirst() : "";
+		String suffix = ends_literal ? runs.getLast() : "";
+		
+		String keyword = "";
+		for (int q = 0; q < runs.size(); ++q){
+			if ((q == 0 && starts_literal) || (q == runs.size() - 1 && ends_literal)){
+				continue;
+			}
+			
+			if (runs.get(q).length() > keyword.length()){
+				keyword = runs.get(q);
+			}
+		}
+		
+		return new String[] {prefix, suffix, keyword};
+	}
+	
+	
+	/**
+	 * Gets the index just past the character class starting at the given index.
+	 * 
+	 * @param format String object containing the regex pattern.
+	 * @param start Integer representing the index of the opening '['.
+	 * @return Integer representing the index just past the closing ']'. -1 if it isn't closed.
+	 */
+	private static int skipClass(String format, int start){
+		int depth = 0;
+		
+		int i = start;
+		while (i < format.length()){
+			char current = format.charAt(i);
+			
+			if (current == '\\'){
+				i += 2;
+				
+				continue;
+			}
+			else if (current == '['){
+				++depth;
+				
+				//A ']' right after the opening (or its '^') is literal:
+				if (i + 1 < format.length() && format.charAt(i + 1) == '^'){
+					++i;
+				}
+				
+				if (i + 1 < format.length() && format.charAt(i + 1) == ']'){
+					++i;
+				}
+			}
+			else if (current == ']'){
+				--depth;
+				
+				if (depth == 0){
+					return i + 1;
+				}
+			}
+			
+			++i;
+		}
+		
+		return -1;
+	}
+	
+	
+	/**
+	 * Gets the index just past the group starting at the given index.
+	 * 
+	 * @param format String object containing the regex pattern.
+	 * @param start Integer representing the index of the opening '('.
+	 * @return Integer representing the index just past the closing ')'. -1 if it isn't closed.
+	 */
+	private static int skipGroup(String format, int start){
+		int depth = 0;
+		
+		int i = start;
+		while (i < format.length()){
+			char current = format.charAt(i);
+			
+			if (current == '\\'){
+				i += 2;
+				
+				continue;
+			}
+			else if (current == '['){
+				i = skipClass(format, i);
+				
+				if (i == -1){
+					return -1;
+				}
+				
+				continue;
+			}
+			else if (current == '('){
+				++depth;
+			}
+			else if (current == ')'){
+				--depth;
+				
+				if (depth == 0){
+					return i + 1;
+				}
+			}
+			
+			++i;
+		}
+		
+		return -1;
+	}
+	
+	
+	/**
+	 * Tells whether or not a quantifier starts at the given index.
+	 * 
+	 * @param format String object containing the regex pattern.
+	 * @param index Integer representing the index to check.
+	 * @return Whether or not a quantifier starts at the given index.
+	 */
+	private static boolean isQuantifier(String format, int index){
+		char current = format.charAt(index);
+		
+		return current == '?' || current == '*' || current == '+' || current == '{';
+	}
+	
+	
+	/**
+	 * Gets the index just past the quantifier starting at the given index, including any lazy or possessive 
+	 * marker.
+	 * 
+	 * @param format String object containing the regex pattern.
+	 * @param index Integer representing the index of the quantifier.
+	 * @return Integer representing the index just past the quantifier. -1 if a '{' isn't closed.
+	 */
+	private static int skipQuantifier(String format, int index){
+		int end = index + 1;
+		
+		if (format.charAt(index) == '{'){
+			end = format.indexOf('}', index) + 1;
+			
+			if (end == 0){
+				return -1;
+			}
+		}
+		
+		if (end < format.length() && (format.charAt(end) == '?' || format.charAt(end) == '+')){
+			++end;
+		}
+		
+		return end;
+	}
+	
+	
+	/**
+	 * Adds the given index to the list of the given key, creating the list if needed.
+	 * 
+	 * @param lists HashMap containing the lists to add to.
+	 * @param key Character to file the index under.
+	 * @param index Integer representing the index of the enumeration.
+	 */
+	private static void addToIndex(HashMap<Character, LinkedList<Integer>> lists, char key, int index){
+		LinkedList<Integer> list = lists.get(key);
+		
+		if (list == null){
+			list = new LinkedList<>();
+			
+			lists.put(key, list);
+		}
+		
+		list.add(index);
+	}
+	
+	
+	/**
+	 * Copies the given list of indices into an array.
+	 * 
+	 * @param list LinkedList containing the indices.
+	 * @return Integer array containing the same indices in the same order.
+	 */
+	private static int[] toArray(LinkedList<Integer> list){
+		int[] array = new int[list.size()];
+		
+		int i = 0;
+		for (Integer index : list){
+			array[i++] = index;
+		}
+		
+		return array;
+	}
+	
+	
+	/**
+	 * Represents a successful classification: the ServerOutputLineType that matched, and the spans of its 
+	 * groups in the entire line.
+	 */
+	static class Match{
+		final int index;
+		final ServerOutputLineType type;
+		final int[] spans;
+		
+		
+		/**
+		 * Constructs a Match object.
+		 * 
+		 * @param index Integer representing the index of the enumeration that matched.
+		 * @param type The ServerOutputLineType enumeration that matched.
+		 * @param spans Integer array containing the spans of the groups, see {@link #spansOf(Matcher)}.
+		 */
+		Match(int index, ServerOutputLineType type, int[] spans){
+			this.index = index;
+			this.type = type;
+			this.spans = spans;
+		}
+	}
+	
+	
+	/**
+	 * Represents a classification in the cache. The spans are kept relative to the start of the contents, since 
+	 * the same contents can come after headers of different lengths.
+	 */
+	private static class CachedMatch{
+		final Match match;
+		
+		
+		/**
+		 * Constructs a CachedMatch object.
+		 * 
+		 * @param match Match object containing the classification to cache. Null if generic.
+		 * @param start Integer representing the index in the line where the contents start.
+		 */
+		CachedMatch(Match match, int start){
+			if (match == null){
+				this.match = null;
+			}
+			else{
+				this.match = new Match(match.index, match.type, shift(match.spans, -start));
+			}
+		}
+		
+		
+		/**
+		 * Gets the cached classification for contents starting at the given index of a line.
+		 * 
+		 * @param start Integer representing the index in the line where the contents start.
+		 * @return Match object containing the classification. Null if generic.
+		 */
+		Match toMatch(int start){
+			if (match == null){
+				return null;
+			}
+			
+			return new Match(match.index, match.type, shift(match.spans, start));
+		}
+		
+		
+		/**
+		 * Copies the given spans, moved by the given amount. Groups that didn't take part in the match stay -1.
+		 * 
+		 * @param spans Integer array containing the spans to move.
+		 * @param amount Integer representing how far to move the spans.
+		 * @return Integer array containing the moved spans.
+		 */
+		private static int[] shift(int[] spans, int amount){
+			int[] shifted = new int[spans.length];
+			
+			for (int i = 0; i < spans.length; ++i){
+				shifted[i] = spans[i] == -1 ? -1 : spans[i] + amount;
+			}
+			
+			return shifted;
+		}
+	}
+	
+	
+	/**
+	 * Represents the order the candidates are checked in: the rank of every enumeration, and the literal index 
+	 * with every bucket sorted by rank. Replaced as a whole whenever the candidates are reordered.
+	 */
+	private static class Order{
+		final int[] rank;
+		final HashMap<Character, int[]> prefixIndex;
+		final HashMap<Character, int[]> suffixIndex;
+		final int[] unindexed;
+		
+		
+		/**
+		 * Constructs an Order object.
+		 * 
+		 * @param rank Integer array containing the rank of every enumeration, 0 being checked first.
+		 * @param prefixIndex HashMap containing the enumerations indexed by the first character of their 
+		 * prefix.
+		 * @param suffixIndex HashMap containing the enumerations indexed by the last character of their suffix.
+		 * @param unindexed Integer array containing the enumerations with neither.
+		 */
+		Order(int[] rank, HashMap<Character, int[]> prefixIndex, HashMap<Character, int[]> suffixIndex,
+				int[] unindexed){
+			
+			this.rank = rank;
+			this.prefixIndex = prefixIndex;
+			this.suffixIndex = suffixIndex;
+			this.unindexed = unindexed;
+		}
+	}
+}